@@ -1,8 +1,19 @@
 package ashes.of.datadog.client;
 
+import ashes.of.datadog.client.aggregation.CounterAggregator;
+import ashes.of.datadog.client.aggregation.DistributionAggregator;
+import ashes.of.datadog.client.aggregation.GaugeAggregator;
 import ashes.of.datadog.client.metrics.MetricType;
+import ashes.of.datadog.client.utils.DefaultThreadFactory;
+import ashes.of.datadog.client.utils.XorShiftRandom;
 
 import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 import static ashes.of.datadog.client.metrics.MetricType.*;
@@ -10,18 +21,437 @@ import static ashes.of.datadog.client.metrics.MetricType.*;
 
 public abstract class AbstractDatadogClient implements DatadogClient {
 
+    /**
+     * Max buckets in distribution sketch, covers values from 1ns to hours with 1% accuracy
+     */
+    private static final int MAX_SKETCH_BUCKETS = 2048;
+
     @Nullable
     protected final String prefix;
 
     protected final Consumer<Throwable> errorHandler;
-    protected final Tags global;
+
+    /**
+     * Global tags compiled on client creation
+     */
+    protected final TagSet global;
+
+    /**
+     * Writer of lines in DogStatsD format with client prefix and global tags
+     */
+    protected final MetricWriter writer;
+
+    /**
+     * Aggregated counters, null if counters aren't aggregated
+     */
+    @Nullable
+    protected final CounterAggregator counters;
+
+    /**
+     * Aggregated gauges, null if gauges aren't aggregated
+     */
+    @Nullable
+    protected final GaugeAggregator gauges;
+
+    /**
+     * Aggregated distributions, null if distributions aren't aggregated
+     */
+    @Nullable
+    protected final DistributionAggregator distributions;
+
+    /**
+     * Timers are sent as distributions instead of histograms
+     */
+    protected final boolean timersAsDistributions;
+
+    /**
+     * What to do with metric when queue is full
+     */
+    protected final OverflowPolicy overflowPolicy;
+
+    /**
+     * Counters of metrics dropped by overflow policy
+     */
+    protected final DroppedMetrics dropped = new DroppedMetrics();
+
+    /**
+     * Counters of the client itself
+     */
+    protected final ClientTelemetry telemetry = new ClientTelemetry(dropped,
+            this::getQueueDepth, this::getQueueCapacity, this::getEventQueueDepth, this::getEventQueueCapacity);
+
+    /**
+     * Sends telemetry once per flush interval, null if telemetry isn't sent
+     */
+    @Nullable
+    private final TelemetryReporter telemetryReporter;
+
+    /**
+     * Suspends sending while agent isn't reachable, null if not used
+     */
+    @Nullable
+    protected final AgentHealth health;
+
+    /**
+     * Total number of dropped metrics at the last report
+     */
+    private long reportedDrops;
+
+    /**
+     * Total number of dropped packets and write errors at the last report
+     */
+    private long reportedPacketDrops;
+    private long reportedErrors;
+
+    private final Duration flushInterval;
+
+    @Nullable
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Max time to send queued metrics on stop
+     */
+    private final Duration shutdownTimeout;
+
+    /**
+     * Stops the client on JVM shutdown, null if hook isn't used
+     */
+    @Nullable
+    private final Thread shutdownHook;
+
+    private final AtomicBoolean stopping = new AtomicBoolean();
+
+    /**
+     * New metrics are dropped after the client is stopped, aggregators don't accept values before the final flush
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Queue doesn't accept metrics after the final flush of aggregators
+     */
+    private volatile boolean closed;
 
     public AbstractDatadogClient(DatadogBuilder b) {
         this.prefix = b.getPrefix();
         this.errorHandler = b.getErrorHandler();
-        this.global = b.tags();
+        this.global = b.tags().compile();
+        this.writer = new MetricWriter(prefix, global, b.getMaxEventSize());
+        this.counters = b.isCounterAggregationUsed() ? new CounterAggregator() : null;
+        this.gauges = b.isGaugeAggregationUsed() ? new GaugeAggregator(b.isUnchangedGaugesSkipped()) : null;
+        this.distributions = b.isDistributionAggregationUsed() ?
+                new DistributionAggregator(b.getDistributionAccuracy(), MAX_SKETCH_BUCKETS, b.getMaxPacketSize() / 2) :
+                null;
+
+        this.timersAsDistributions = b.isTimersAsDistributionsUsed();
+        this.flushInterval = b.getFlushInterval();
+        this.overflowPolicy = b.getOverflowPolicy();
+        this.telemetryReporter = b.isTelemetrySent() ? new TelemetryReporter(telemetry, global) : null;
+        this.shutdownTimeout = b.getShutdownTimeout();
+        this.shutdownHook = b.isShutdownHookUsed() ? new Thread(this::stop, "datadog-shutdown-hook") : null;
+        this.health = b.isSuspendedOnAgentDown() ?
+                new AgentHealth(b.getMaxAgentFailures(), b.getMinProbeInterval().toNanos(), b.getMaxProbeInterval().toNanos(), errorHandler) :
+                null;
+    }
+
+
+    @Override
+    public DroppedMetrics getDroppedMetrics() {
+        return dropped;
+    }
+
+    @Override
+    public ClientTelemetry getTelemetry() {
+        return telemetry;
+    }
+
+    @Override
+    public void handleError(Throwable th) {
+        errorHandler.accept(th);
+    }
+
+    /**
+     * @return used capacity of queue, sampled by telemetry
+     */
+    protected long getQueueDepth() {
+        return 0;
+    }
+
+    /**
+     * @return capacity of queue
+     */
+    protected long getQueueCapacity() {
+        return 0;
+    }
+
+    /**
+     * @return used capacity of separate queue for events and service checks, sampled by telemetry
+     */
+    protected long getEventQueueDepth() {
+        return 0;
+    }
+
+    /**
+     * @return capacity of separate queue for events and service checks, zero if there is no such queue
+     */
+    protected long getEventQueueCapacity() {
+        return 0;
+    }
+
+    /**
+     * Checks priority of metric type against fill of the queue, high priority metrics are dropped only when queue is full
+     *
+     * @param type metric type
+     * @param used used capacity of queue
+     * @param capacity capacity of queue
+     * @return true if metric should be dropped by {@link OverflowPolicy#DROP_BY_PRIORITY}
+     */
+    protected boolean isDroppedByPriority(MetricType type, long used, long capacity) {
+        if (overflowPolicy != OverflowPolicy.DROP_BY_PRIORITY)
+            return false;
+
+        switch (type) {
+            case HISTOGRAM:
+            case DISTRIBUTION:
+            case SET:
+                return used >= capacity / 2;
+
+            case GAUGE:
+                return used >= capacity / 4 * 3;
+
+            default:
+                return false;
+        }
+    }
+
+
+    /**
+     * @return true if client has any aggregated metrics
+     */
+    protected boolean isAggregationUsed() {
+        return counters != null || gauges != null || distributions != null;
+    }
+
+    /**
+     * Starts periodic flush and registers shutdown hook, should be invoked by subclass when it's ready to send
+     */
+    protected void start() {
+        startFlushing();
+
+        if (shutdownHook != null)
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stops accepting new metrics, sends aggregated metrics and waits until queued metrics are sent,
+     * but not longer than shutdown timeout. Subsequent invocations do nothing
+     */
+    @Override
+    public void stop() {
+        if (!stopping.compareAndSet(false, true))
+            return;
+
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+
+        // aggregated values recorded after the final flush would be lost
+        stopped = true;
+        stopFlushing(deadline);
+        closed = true;
+
+        // shared refresher thread would invoke suppliers of global tags after the client is stopped
+        global.cancelRefresh();
+
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM is already shutting down
+            }
+        }
+
+        drain(deadline);
+
+        // drops during drain aren't reported by flusher
+        reportDrops();
+        reportPacketDrops();
+    }
+
+    /**
+     * @return true if the client doesn't accept new metrics
+     */
+    @Override
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @return true if the queue doesn't accept metrics, aggregated metrics are queued by the final flush before it
+     */
+    protected boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Counts metric as dropped if the client is stopped, checked before value is aggregated
+     *
+     * @return true if metric is dropped
+     */
+    private boolean isDroppedOnStop(MetricType type) {
+        if (!stopped)
+            return false;
+
+        dropped.metric(type);
+        return true;
+    }
+
+    /**
+     * @return true if sending is suspended because agent isn't reachable
+     */
+    protected boolean isSuspended() {
+        return health != null && health.isSuspended();
+    }
+
+    /**
+     * Sends queued metrics until the queue is empty or deadline is reached, then stops consumer threads and closes channels
+     *
+     * @param deadline deadline in terms of {@link System#nanoTime()}
+     */
+    protected abstract void drain(long deadline);
+
+    /**
+     * Waits for consumer thread to finish, but not after deadline
+     *
+     * @param thread consumer thread
+     * @param deadline deadline in terms of {@link System#nanoTime()}
+     */
+    protected void join(Thread thread, long deadline) {
+        try {
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            thread.join(Math.max(millis, 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Passes {@link TimeoutException} to error handler if queue isn't empty after drain
+     */
+    protected void reportUndrained() {
+        long depth = getQueueDepth() + getEventQueueDepth();
+        if (depth > 0)
+            errorHandler.accept(new TimeoutException(String.format("%d queued metrics weren't sent within shutdown timeout", depth)));
+    }
+
+    /**
+     * Closes sender, errors are passed to error handler
+     */
+    protected void closeSafely(PacketSender sender) {
+        try {
+            sender.close();
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+    }
+
+    /**
+     * Starts periodic flush of aggregated metrics, report of dropped metrics and packets and telemetry
+     */
+    private void startFlushing() {
+        long interval = flushInterval.toNanos();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("datadog-flusher-%d", true));
+        scheduler.scheduleAtFixedRate(this::flushSafely, interval, interval, TimeUnit.NANOSECONDS);
+        if (health != null)
+            health.start(scheduler);
+    }
+
+    /**
+     * Stops periodic flush, sends all aggregated metrics, reports dropped metrics and telemetry
+     */
+    /**
+     * Waits for in-flight flush, so the final flush doesn't race with it, and flushes aggregated metrics
+     *
+     * @param deadline System.nanoTime() after which flusher isn't awaited
+     */
+    private void stopFlushing(long deadline) {
+        if (scheduler == null)
+            return;
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+                scheduler.shutdownNow();
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        flushSafely();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+
+        reportDrops();
+        reportPacketDrops();
+
+        try {
+            if (telemetryReporter != null)
+                telemetryReporter.report(this);
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+    }
+
+    /**
+     * Passes {@link MetricsDroppedException} to error handler if any metrics were dropped since the last report
+     */
+    private synchronized void reportDrops() {
+        long total = dropped.getTotal();
+        long drops = total - reportedDrops;
+        if (drops <= 0)
+            return;
+
+        reportedDrops = total;
+        errorHandler.accept(new MetricsDroppedException(drops, dropped));
+    }
+
+    /**
+     * Passes {@link PacketsDroppedException} to error handler if any packets weren't sent or any write errors
+     * occurred since the last report
+     */
+    private synchronized void reportPacketDrops() {
+        long total = telemetry.getDroppedPackets();
+        long errors = telemetry.getErrors();
+        long drops = total - reportedPacketDrops;
+        long newErrors = errors - reportedErrors;
+        if (drops <= 0 && newErrors <= 0)
+            return;
+
+        reportedPacketDrops = total;
+        reportedErrors = errors;
+        errorHandler.accept(new PacketsDroppedException(drops, newErrors, telemetry.getLastError()));
     }
 
+    /**
+     * Sends all aggregated metrics
+     */
+    protected void flush() {
+        if (counters != null)
+            counters.flush((key, value) -> send(key.getName(), value, COUNTER, key.tags()));
+
+        if (gauges != null)
+            gauges.flush(
+                    (key, value) -> send(key.getName(), value, GAUGE, key.tags()),
+                    (key, value) -> send(key.getName(), value, GAUGE, key.tags()));
+
+        if (distributions != null)
+            distributions.flush((key, values, rate) -> send(key.getName(), values, DISTRIBUTION, rate, key.tags()));
+    }
+
+
     protected void send(String metric, long value, MetricType type, Tags tags) {
         send(metric, String.valueOf(value), type, tags);
     }
@@ -32,20 +462,200 @@ public abstract class AbstractDatadogClient implements DatadogClient {
 
     protected abstract void send(String metric, String value, MetricType type, Tags tags);
 
+    /**
+     * Sends metric with sample rate, agent multiplies received values by 1/rate
+     */
+    protected void send(String metric, long value, MetricType type, double sampleRate, Tags tags) {
+        send(metric, String.valueOf(value), type, sampleRate, tags);
+    }
+
+    /**
+     * Sends metric with sample rate, agent multiplies received values by 1/rate
+     */
+    protected void send(String metric, double value, MetricType type, double sampleRate, Tags tags) {
+        send(metric, String.valueOf(value), type, sampleRate, tags);
+    }
+
+    /**
+     * Sends metric with sample rate, agent multiplies received values by 1/rate
+     */
+    protected abstract void send(String metric, String value, MetricType type, double sampleRate, Tags tags);
+
+    /**
+     * Sends compiled metric, override to use encoded line template
+     */
+    protected void send(CompiledMetric metric, long value) {
+        send(metric.getName(), value, metric.getType(), metric.getSampleRate(), metric.getTags());
+    }
+
+    /**
+     * Sends compiled metric, override to use encoded line template
+     */
+    protected void send(CompiledMetric metric, double value) {
+        send(metric.getName(), value, metric.getType(), metric.getSampleRate(), metric.getTags());
+    }
+
+    /**
+     * Sends compiled metric, override to use encoded line template
+     */
+    protected void send(CompiledMetric metric, String value) {
+        send(metric.getName(), value, metric.getType(), metric.getSampleRate(), metric.getTags());
+    }
+
+
+    /**
+     * Encodes line template: prefix.name: as head and |type|@sample_rate|#global_tags,tags as tail,
+     * tags are encoded only if all of them are constant
+     */
+    @Override
+    public CompiledMetric compile(String metric, MetricType type, double sampleRate, Tags tags) {
+        return writer.compile(metric, type, sampleRate, tags);
+    }
+
+    @Override
+    public CompiledMetric compileTimer(String metric, double sampleRate, Tags tags) {
+        return compile(metric, timersAsDistributions ? DISTRIBUTION : HISTOGRAM, sampleRate, tags);
+    }
+
+    /**
+     * Sampled metrics aren't aggregated, they are sent with sample rate if they pass sampling
+     */
+    @Override
+    public void record(CompiledMetric metric, long value) {
+        double sampleRate = metric.getSampleRate();
+        if (sampleRate < 1) {
+            if (XorShiftRandom.sample(sampleRate))
+                send(metric, value);
+
+            return;
+        }
+
+        switch (metric.getType()) {
+            case COUNTER:
+                if (counters != null) {
+                    if (!isDroppedOnStop(COUNTER))
+                        counters.count(metric.key(), value);
+
+                    return;
+                }
+                break;
+
+            case GAUGE:
+                if (gauges != null) {
+                    if (!isDroppedOnStop(GAUGE))
+                        gauges.gauge(metric.key(), value);
+
+                    return;
+                }
+                break;
+
+            case DISTRIBUTION:
+                if (distributions != null) {
+                    if (!isDroppedOnStop(DISTRIBUTION) && !distributions.distribution(metric.key(), value))
+                        dropped.metric(DISTRIBUTION);
+
+                    return;
+                }
+                break;
+        }
+
+        send(metric, value);
+    }
+
+    @Override
+    public void record(CompiledMetric metric, double value) {
+        double sampleRate = metric.getSampleRate();
+        if (sampleRate < 1) {
+            if (XorShiftRandom.sample(sampleRate))
+                send(metric, value);
+
+            return;
+        }
+
+        switch (metric.getType()) {
+            case COUNTER:
+                record(metric, (long) value);
+                return;
+
+            case GAUGE:
+                if (gauges != null) {
+                    if (!isDroppedOnStop(GAUGE))
+                        gauges.gauge(metric.key(), value);
+
+                    return;
+                }
+                break;
+
+            case DISTRIBUTION:
+                if (distributions != null) {
+                    if (!isDroppedOnStop(DISTRIBUTION) && !distributions.distribution(metric.key(), value))
+                        dropped.metric(DISTRIBUTION);
+
+                    return;
+                }
+                break;
+        }
+
+        send(metric, value);
+    }
+
+    @Override
+    public void record(CompiledMetric metric, String value) {
+        if (metric.getType() != SET)
+            throw new IllegalArgumentException("String values are supported only by sets: " + metric);
+
+        send(metric, value);
+    }
+
 
     @Override
     public void count(String metric, long value, Tags tags) {
+        if (counters != null) {
+            if (!isDroppedOnStop(COUNTER))
+                counters.count(metric, value, tags);
+
+            return;
+        }
+
         send(metric, value, COUNTER, tags);
     }
 
+    /**
+     * Sampled counters aren't aggregated, they are sent with sample rate if they pass sampling
+     */
+    @Override
+    public void count(String metric, long value, double sampleRate, Tags tags) {
+        if (sampleRate >= 1) {
+            count(metric, value, tags);
+            return;
+        }
+
+        if (XorShiftRandom.sample(sampleRate))
+            send(metric, value, COUNTER, sampleRate, tags);
+    }
+
 
     @Override
     public void gauge(String metric, double value, Tags tags) {
+        if (gauges != null) {
+            if (!isDroppedOnStop(GAUGE))
+                gauges.gauge(metric, value, tags);
+
+            return;
+        }
+
         send(metric, value, GAUGE, tags);
     }
 
     @Override
     public void gauge(String metric, long value, Tags tags) {
+        if (gauges != null) {
+            if (!isDroppedOnStop(GAUGE))
+                gauges.gauge(metric, value, tags);
+
+            return;
+        }
+
         send(metric, value, GAUGE, tags);
     }
 
@@ -55,11 +665,117 @@ public abstract class AbstractDatadogClient implements DatadogClient {
         send(metric, value, HISTOGRAM, tags);
     }
 
+    @Override
+    public void histogram(String metric, double value, double sampleRate, Tags tags) {
+        if (XorShiftRandom.sample(sampleRate))
+            send(metric, value, HISTOGRAM, sampleRate, tags);
+    }
+
     @Override
     public void histogram(String metric, long value, Tags tags) {
         send(metric, value, HISTOGRAM, tags);
     }
 
+    @Override
+    public void histogram(String metric, long value, double sampleRate, Tags tags) {
+        if (XorShiftRandom.sample(sampleRate))
+            send(metric, value, HISTOGRAM, sampleRate, tags);
+    }
+
+
+    @Override
+    public void millis(String metric, long millis, Tags tags) {
+        if (timersAsDistributions) {
+            distribution(metric, millis / 1_000., tags);
+            return;
+        }
+
+        histogram(metric, millis / 1_000., tags);
+    }
+
+    @Override
+    public void nanos(String metric, long nanos, Tags tags) {
+        if (timersAsDistributions) {
+            distribution(metric, nanos / 1_000_000_000., tags);
+            return;
+        }
+
+        histogram(metric, nanos / 1_000_000_000., tags);
+    }
+
+    @Override
+    public void millis(String metric, long millis, double sampleRate, Tags tags) {
+        if (timersAsDistributions) {
+            distribution(metric, millis / 1_000., sampleRate, tags);
+            return;
+        }
+
+        histogram(metric, millis / 1_000., sampleRate, tags);
+    }
+
+    @Override
+    public void nanos(String metric, long nanos, double sampleRate, Tags tags) {
+        if (timersAsDistributions) {
+            distribution(metric, nanos / 1_000_000_000., sampleRate, tags);
+            return;
+        }
+
+        histogram(metric, nanos / 1_000_000_000., sampleRate, tags);
+    }
+
+
+    @Override
+    public void distribution(String metric, double value, Tags tags) {
+        if (distributions != null) {
+            if (!isDroppedOnStop(DISTRIBUTION) && !distributions.distribution(metric, value, tags))
+                dropped.metric(DISTRIBUTION);
+
+            return;
+        }
+
+        send(metric, value, DISTRIBUTION, tags);
+    }
+
+    /**
+     * Sampled distributions aren't aggregated, they are sent with sample rate if they pass sampling
+     */
+    @Override
+    public void distribution(String metric, double value, double sampleRate, Tags tags) {
+        if (sampleRate >= 1) {
+            distribution(metric, value, tags);
+            return;
+        }
+
+        if (XorShiftRandom.sample(sampleRate))
+            send(metric, value, DISTRIBUTION, sampleRate, tags);
+    }
+
+    @Override
+    public void distribution(String metric, long value, Tags tags) {
+        if (distributions != null) {
+            if (!isDroppedOnStop(DISTRIBUTION) && !distributions.distribution(metric, value, tags))
+                dropped.metric(DISTRIBUTION);
+
+            return;
+        }
+
+        send(metric, value, DISTRIBUTION, tags);
+    }
+
+    /**
+     * Sampled distributions aren't aggregated, they are sent with sample rate if they pass sampling
+     */
+    @Override
+    public void distribution(String metric, long value, double sampleRate, Tags tags) {
+        if (sampleRate >= 1) {
+            distribution(metric, value, tags);
+            return;
+        }
+
+        if (XorShiftRandom.sample(sampleRate))
+            send(metric, value, DISTRIBUTION, sampleRate, tags);
+    }
+
 
     @Override
     public void set(String metric, String value, Tags tags) {
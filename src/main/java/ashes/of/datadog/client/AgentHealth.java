@@ -0,0 +1,158 @@
+package ashes.of.datadog.client;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.PortUnreachableException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+
+/**
+ * Tracks reachability of the agent: after several consecutive port unreachable errors sending is suspended,
+ * producers drop metrics before encoding and transports are probed with exponential backoff until agent is back.
+ *
+ * Suspended state is read by producers, failures are reported by consumer threads.
+ * Transports are probed only by the scheduler thread of the client, so the thread reporting the failure
+ * doesn't touch transports of other consumers
+ */
+public class AgentHealth {
+
+    private final int maxFailures;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Consumer<Throwable> errorHandler;
+
+    private final List<PacketSender> senders = new CopyOnWriteArrayList<>();
+
+    /**
+     * Failures in a row, reported by consumer threads
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile long lastFailureNanos;
+
+    private volatile boolean suspended;
+
+    /**
+     * Current probe interval, guarded by this
+     */
+    private long backoffNanos;
+
+    @Nullable
+    private volatile ScheduledExecutorService scheduler;
+
+
+    /**
+     * @param maxFailures number of consecutive failures to suspend sending
+     * @param minBackoffNanos interval before the first probe
+     * @param maxBackoffNanos max interval between probes
+     * @param errorHandler receives {@link AgentUnreachableException} on suspension
+     */
+    public AgentHealth(int maxFailures, long minBackoffNanos, long maxBackoffNanos, Consumer<Throwable> errorHandler) {
+        this.maxFailures = maxFailures;
+        this.minBackoffNanos = minBackoffNanos;
+        this.maxBackoffNanos = maxBackoffNanos;
+        this.errorHandler = errorHandler;
+    }
+
+
+    /**
+     * @param scheduler scheduler for probes
+     */
+    void start(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @param sender sender which transport should be probed
+     */
+    void register(PacketSender sender) {
+        senders.add(sender);
+    }
+
+    /**
+     * @return true if sending is suspended and metrics should be dropped
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Counts failure if it means that agent isn't reachable, suspends sending after max failures in a row.
+     *
+     * Successful write to connected channel doesn't mean that datagram is delivered, error of the one datagram
+     * fails the next write, so failures are in a row if they aren't farther apart than min backoff
+     */
+    void failure(IOException e) {
+        if (!(e instanceof PortUnreachableException))
+            return;
+
+        long now = System.nanoTime();
+        long last = lastFailureNanos;
+        lastFailureNanos = now;
+        if (now - last > minBackoffNanos)
+            failures.set(0);
+
+        if (failures.incrementAndGet() >= maxFailures)
+            suspend(e);
+    }
+
+    private synchronized void suspend(IOException cause) {
+        if (suspended)
+            return;
+
+        suspended = true;
+        backoffNanos = minBackoffNanos;
+        errorHandler.accept(new AgentUnreachableException(failures.get(), cause));
+
+        // the next probe checks reply to this one
+        schedule(this::prime, 0);
+        schedule(this::probe, backoffNanos);
+    }
+
+    private void schedule(Runnable task, long delayNanos) {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null)
+            return;
+
+        try {
+            scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // client is stopped
+        }
+    }
+
+    private synchronized void prime() {
+        if (suspended)
+            probeAll();
+    }
+
+    private synchronized void probe() {
+        if (!suspended)
+            return;
+
+        if (probeAll()) {
+            failures.set(0);
+            suspended = false;
+            return;
+        }
+
+        backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+        schedule(this::probe, backoffNanos);
+    }
+
+    /**
+     * @return true if all transports are reachable
+     */
+    private boolean probeAll() {
+        boolean reachable = true;
+        for (PacketSender sender : senders)
+            reachable &= sender.probe();
+
+        return reachable;
+    }
+}
@@ -0,0 +1,16 @@
+package ashes.of.datadog.client;
+
+
+/**
+ * Passed to error handler when sending is suspended because agent isn't reachable
+ *
+ * @see DatadogBuilder#suspendOnAgentDown()
+ */
+public class AgentUnreachableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AgentUnreachableException(int failures, Throwable cause) {
+        super(String.format("Agent isn't reachable after %d failures, sending is suspended", failures), cause, false, false);
+    }
+}
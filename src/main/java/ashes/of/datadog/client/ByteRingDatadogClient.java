@@ -0,0 +1,319 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.Event;
+import ashes.of.datadog.client.metrics.MetricType;
+import ashes.of.datadog.client.metrics.ServiceCheck;
+import ashes.of.datadog.client.ring.ByteRing;
+import ashes.of.datadog.client.utils.Backoff;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Client with variable length records in one contiguous byte ring.
+ *
+ * Metrics are encoded into thread local buffer and copied into the ring, so the ring holds only actual bytes of metrics
+ * instead of preallocated buffer of max size per slot
+ */
+public class ByteRingDatadogClient extends AbstractDatadogClient {
+
+    /**
+     * Park time of idle consumer after spinning and yielding
+     */
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    /**
+     * Park time of producer waiting for free space, the same as {@link ByteRing#put(ByteBuf)} parks
+     */
+    private static final long BLOCK_PARK_NANOS = 1_000;
+
+    private final PacketSender sender;
+    private final ByteRing ring;
+    private final ThreadLocal<ByteBuf> buffers;
+    private final int bufferSize;
+    private final ByteRing.RecordHandler handler;
+    private final Thread consumer;
+
+    private volatile boolean running = true;
+
+    /**
+     * Consumer stops draining the ring after this time, set on stop
+     */
+    private volatile long deadline;
+
+
+    /**
+     * @param b builder
+     */
+    public ByteRingDatadogClient(DatadogBuilder b) {
+        super(b);
+        if (b.getEventLaneSize() > 0)
+            throw new IllegalArgumentException("Event lane is supported only by " + ShardedDatadogClient.class.getSimpleName());
+
+        if (b.getSenders() > 1)
+            throw new IllegalArgumentException("Several senders are supported only by " + DisruptorDatadogClient.class.getSimpleName());
+
+        if (b.isWaitStrategySet() || b.getProducerType() != ProducerType.MULTI)
+            throw new IllegalArgumentException("Wait strategy and producer type are supported only by " + DisruptorDatadogClient.class.getSimpleName());
+
+        this.sender = new PacketSender(b, telemetry, health);
+        this.ring = new ByteRing(b.getByteRingSize(), b.isDirectMemoryUsed());
+
+        this.bufferSize = b.getBufferSize();
+        this.buffers = ThreadLocal.withInitial(() -> Unpooled.buffer(bufferSize));
+        this.handler = (buf, index, length) -> sender.send(buf, index, length, false);
+
+        this.consumer = b.getThreadFactory().newThread(this::consume);
+        this.consumer.start();
+
+        start();
+    }
+
+
+    private void consume() {
+        Backoff backoff = new Backoff(IDLE_PARK_NANOS);
+        while (true) {
+            if (readSafely() > 0) {
+                backoff.reset();
+            } else if (running) {
+                backoff.idle();
+            } else {
+                break;
+            }
+
+            if (!running && System.nanoTime() - deadline > 0)
+                break;
+        }
+    }
+
+    private int readSafely() {
+        int read = 0;
+        try {
+            read = ring.read(handler);
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+
+        try {
+            if (read > 0)
+                sender.flush();
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+
+        return read;
+    }
+
+    @Override
+    protected long getQueueDepth() {
+        return ring.size();
+    }
+
+    @Override
+    protected long getQueueCapacity() {
+        return ring.getCapacity();
+    }
+
+    @Override
+    protected void drain(long deadline) {
+        this.deadline = deadline;
+        this.running = false;
+
+        join(consumer, deadline);
+        reportUndrained();
+        closeSafely(sender);
+    }
+
+
+    /**
+     * @return cleared thread local buffer for encoding, shrunk to buffer size if it grew for a long line
+     */
+    private ByteBuf buffer() {
+        ByteBuf b = buffers.get().clear();
+        if (b.capacity() > bufferSize)
+            b.capacity(bufferSize);
+
+        return b;
+    }
+
+    /**
+     * @return true if metric is dropped by priority or because sending is suspended, checked before encoding
+     */
+    private boolean isDropped(MetricType type) {
+        boolean droppedByPriority = overflowPolicy == OverflowPolicy.DROP_BY_PRIORITY &&
+                isDroppedByPriority(type, ring.size(), ring.getCapacity());
+
+        if (!droppedByPriority && !isSuspended())
+            return false;
+
+        dropped.metric(type);
+        return true;
+    }
+
+    /**
+     * Copies record into the ring, waits for free space only if overflow policy is {@link OverflowPolicy#BLOCK}
+     * and until the client is stopped
+     *
+     * @return false if ring is full or the client is stopped
+     */
+    private boolean publish(ByteBuf b) {
+        if (isClosed())
+            return false;
+
+        try {
+            while (!ring.offer(b)) {
+                // consumer exits on stop, so waiting producer gives up instead of waiting forever
+                if (overflowPolicy != OverflowPolicy.BLOCK || isClosed())
+                    return false;
+
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+
+            return true;
+        } catch (Exception e) {
+            errorHandler.accept(e);
+            return false;
+        }
+    }
+
+    private void publish(ByteBuf b, MetricType type) {
+        if (publish(b)) {
+            telemetry.metric();
+        } else {
+            dropped.metric(type);
+        }
+    }
+
+
+    @Override
+    protected void send(String metric, long value, MetricType type, Tags tags) {
+        send(metric, value, type, 1, tags);
+    }
+
+    @Override
+    protected void send(String metric, long value, MetricType type, double sampleRate, Tags tags) {
+        if (isDropped(type))
+            return;
+
+        ByteBuf b = buffer();
+        writer.write(b, metric, value, type, sampleRate, tags);
+        publish(b, type);
+    }
+
+    @Override
+    protected void send(String metric, double value, MetricType type, Tags tags) {
+        send(metric, value, type, 1, tags);
+    }
+
+    @Override
+    protected void send(String metric, double value, MetricType type, double sampleRate, Tags tags) {
+        if (isDropped(type))
+            return;
+
+        ByteBuf b = buffer();
+        writer.write(b, metric, value, type, sampleRate, tags);
+        publish(b, type);
+    }
+
+    @Override
+    protected void send(String metric, String value, MetricType type, Tags tags) {
+        send(metric, value, type, 1, tags);
+    }
+
+    @Override
+    protected void send(String metric, String value, MetricType type, double sampleRate, Tags tags) {
+        if (isDropped(type))
+            return;
+
+        ByteBuf b = buffer();
+        writer.write(b, metric, value, type, sampleRate, tags);
+        publish(b, type);
+    }
+
+    @Override
+    protected void send(CompiledMetric metric, long value) {
+        if (!metric.isEncoded()) {
+            super.send(metric, value);
+            return;
+        }
+
+        if (isDropped(metric.getType()))
+            return;
+
+        ByteBuf b = buffer();
+        writer.write(b, metric, value);
+        publish(b, metric.getType());
+    }
+
+    @Override
+    protected void send(CompiledMetric metric, double value) {
+        if (!metric.isEncoded()) {
+            super.send(metric, value);
+            return;
+        }
+
+        if (isDropped(metric.getType()))
+            return;
+
+        ByteBuf b = buffer();
+        writer.write(b, metric, value);
+        publish(b, metric.getType());
+    }
+
+    @Override
+    protected void send(CompiledMetric metric, String value) {
+        if (!metric.isEncoded()) {
+            super.send(metric, value);
+            return;
+        }
+
+        if (isDropped(metric.getType()))
+            return;
+
+        ByteBuf b = buffer();
+        writer.write(b, metric, value);
+        publish(b, metric.getType());
+    }
+
+
+    /**
+     * @param event event
+     */
+    @Override
+    public void event(Event event) {
+        if (isSuspended()) {
+            dropped.event();
+            return;
+        }
+
+        ByteBuf b = buffer();
+        writer.writeEvent(b, event);
+        if (publish(b)) {
+            telemetry.event();
+        } else {
+            dropped.event();
+        }
+    }
+
+    /**
+     * @param check service check
+     */
+    @Override
+    public void serviceCheck(ServiceCheck check) {
+        if (isSuspended()) {
+            dropped.serviceCheck();
+            return;
+        }
+
+        ByteBuf b = buffer();
+        writer.writeServiceCheck(b, check);
+        if (publish(b)) {
+            telemetry.serviceCheck();
+        } else {
+            dropped.serviceCheck();
+        }
+    }
+}
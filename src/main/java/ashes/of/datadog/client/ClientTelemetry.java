@@ -0,0 +1,196 @@
+package ashes.of.datadog.client;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Counters of the client itself: queued metrics, written datagrams and bytes, write errors, drops and queue depth.
+ *
+ * All counters are cumulative since client creation
+ */
+public class ClientTelemetry {
+
+    private final LongAdder metrics = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder serviceChecks = new LongAdder();
+    private final LongAdder packets = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder droppedPackets = new LongAdder();
+
+    @Nullable
+    private volatile IOException lastError;
+
+    private final DroppedMetrics dropped;
+    private final LongSupplier queueDepth;
+    private final LongSupplier queueCapacity;
+    private final LongSupplier eventQueueDepth;
+    private final LongSupplier eventQueueCapacity;
+
+    /**
+     * @param dropped dropped metrics
+     * @param queueDepth sampler of used queue capacity
+     * @param queueCapacity queue capacity
+     */
+    public ClientTelemetry(DroppedMetrics dropped, LongSupplier queueDepth, LongSupplier queueCapacity) {
+        this(dropped, queueDepth, queueCapacity, () -> 0, () -> 0);
+    }
+
+    /**
+     * @param dropped dropped metrics
+     * @param queueDepth sampler of used queue capacity
+     * @param queueCapacity queue capacity
+     * @param eventQueueDepth sampler of used capacity of event lane
+     * @param eventQueueCapacity capacity of event lane, zero if there is no event lane
+     */
+    public ClientTelemetry(DroppedMetrics dropped, LongSupplier queueDepth, LongSupplier queueCapacity,
+                           LongSupplier eventQueueDepth, LongSupplier eventQueueCapacity) {
+        this.dropped = dropped;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.eventQueueDepth = eventQueueDepth;
+        this.eventQueueCapacity = eventQueueCapacity;
+    }
+
+
+    void metric() {
+        metrics.increment();
+    }
+
+    void event() {
+        events.increment();
+    }
+
+    void serviceCheck() {
+        serviceChecks.increment();
+    }
+
+    void packet(int length) {
+        packets.increment();
+        bytes.add(length);
+    }
+
+    void error(IOException e) {
+        errors.increment();
+        lastError = e;
+    }
+
+    void packetDropped() {
+        droppedPackets.increment();
+    }
+
+    void packetsDropped(int packets) {
+        droppedPackets.add(packets);
+    }
+
+
+    /**
+     * @return number of metrics put into queue
+     */
+    public long getMetrics() {
+        return metrics.sum();
+    }
+
+    /**
+     * @return number of events put into queue
+     */
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * @return number of service checks put into queue
+     */
+    public long getServiceChecks() {
+        return serviceChecks.sum();
+    }
+
+    /**
+     * @return number of written datagrams
+     */
+    public long getPackets() {
+        return packets.sum();
+    }
+
+    /**
+     * @return number of written bytes
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return number of failed writes
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return number of packets which weren't sent because of full socket buffer or write error
+     */
+    public long getDroppedPackets() {
+        return droppedPackets.sum();
+    }
+
+    /**
+     * @return the last write error or null if there were no errors
+     */
+    @Nullable
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    public DroppedMetrics getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return used capacity of queue at the moment, in slots or in bytes for byte ring
+     */
+    public long getQueueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    /**
+     * @return capacity of queue, in slots or in bytes for byte ring
+     */
+    public long getQueueCapacity() {
+        return queueCapacity.getAsLong();
+    }
+
+    /**
+     * @return used capacity of event lane at the moment, zero if there is no event lane
+     */
+    public long getEventQueueDepth() {
+        return eventQueueDepth.getAsLong();
+    }
+
+    /**
+     * @return capacity of event lane, zero if there is no event lane
+     */
+    public long getEventQueueCapacity() {
+        return eventQueueCapacity.getAsLong();
+    }
+
+    @Override
+    public String toString() {
+        return "ClientTelemetry{" +
+                "metrics=" + getMetrics() +
+                ", events=" + getEvents() +
+                ", serviceChecks=" + getServiceChecks() +
+                ", packets=" + getPackets() +
+                ", bytes=" + getBytes() +
+                ", errors=" + getErrors() +
+                ", droppedPackets=" + getDroppedPackets() +
+                ", dropped=" + dropped.getTotal() +
+                ", queueDepth=" + getQueueDepth() +
+                ", queueCapacity=" + getQueueCapacity() +
+                ", eventQueueDepth=" + getEventQueueDepth() +
+                ", eventQueueCapacity=" + getEventQueueCapacity() +
+                '}';
+    }
+}
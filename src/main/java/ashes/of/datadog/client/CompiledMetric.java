@@ -0,0 +1,171 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.aggregation.MetricKey;
+import ashes.of.datadog.client.metrics.MetricType;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Metric with frozen name, type, sample rate and tags.
+ *
+ * Client may pre-encode the head (prefix.name:) and the tail (|type|#tags) of the line,
+ * so only the value is formatted on each send. If any of tags is dynamic, tags are written on each send
+ */
+public class CompiledMetric {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String name;
+    private final MetricType type;
+    private final double sampleRate;
+    private final Tags tags;
+    private final TagSet tagSet;
+
+    /**
+     * Aggregation key, null if tags are dynamic and key should be resolved on each send
+     */
+    @Nullable
+    private final MetricKey key;
+
+    private final byte[] head;
+    private final byte[] tail;
+    private final boolean constant;
+
+    /**
+     * Direct copies of head and tail for gathering writes, created on the first gathering write,
+     * so metrics which are never sent this way don't hold direct memory. Used only by consumer thread
+     */
+    @Nullable
+    private ByteBuffer headSegment;
+
+    @Nullable
+    private ByteBuffer tailSegment;
+
+
+    /**
+     * Creates metric without encoded line template
+     */
+    public CompiledMetric(String name, MetricType type, Tags tags) {
+        this(name, type, 1, tags);
+    }
+
+    /**
+     * Creates sampled metric without encoded line template
+     */
+    public CompiledMetric(String name, MetricType type, double sampleRate, Tags tags) {
+        this(name, type, sampleRate, tags, EMPTY, EMPTY, false);
+    }
+
+    CompiledMetric(String name, MetricType type, double sampleRate, Tags tags, byte[] head, byte[] tail, boolean constant) {
+        if (!(sampleRate > 0 && sampleRate <= 1))
+            throw new IllegalArgumentException("Sample rate should be in (0, 1] range: " + sampleRate);
+
+        if (sampleRate < 1 && (type == MetricType.GAUGE || type == MetricType.SET))
+            throw new IllegalArgumentException("Sample rate isn't supported by " + type);
+
+        this.name = name;
+        this.type = type;
+        this.sampleRate = sampleRate;
+        this.tags = tags;
+        this.tagSet = tags.compile();
+        this.key = tagSet.isConstant() ? MetricKey.of(name, tags) : null;
+        this.head = head;
+        this.tail = tail;
+        this.constant = constant;
+    }
+
+    private static ByteBuffer segment(byte[] bytes) {
+        ByteBuffer segment = ByteBuffer.allocateDirect(bytes.length);
+        segment.put(bytes);
+        segment.flip();
+
+        return segment;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MetricType getType() {
+        return type;
+    }
+
+    /**
+     * @return sample rate, 1 if metric isn't sampled
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public Tags getTags() {
+        return tags;
+    }
+
+    TagSet getTagSet() {
+        return tagSet;
+    }
+
+    /**
+     * @return key for aggregation of this metric
+     */
+    public MetricKey key() {
+        return key != null ? key : MetricKey.of(name, tags);
+    }
+
+    /**
+     * @return true if line template is encoded
+     */
+    boolean isEncoded() {
+        return head.length > 0;
+    }
+
+    /**
+     * @return encoded head of line: prefix.name:
+     */
+    byte[] head() {
+        return head;
+    }
+
+    /**
+     * @return encoded tail of line: |type, |@sample_rate and all tags if they are constant
+     */
+    byte[] tail() {
+        return tail;
+    }
+
+    /**
+     * @return encoded head with position reset, shared by all sends of this metric
+     */
+    ByteBuffer headSegment() {
+        if (headSegment == null)
+            headSegment = segment(head);
+
+        headSegment.clear();
+        return headSegment;
+    }
+
+    /**
+     * @return encoded tail with position reset, shared by all sends of this metric
+     */
+    ByteBuffer tailSegment() {
+        if (tailSegment == null)
+            tailSegment = segment(tail);
+
+        tailSegment.clear();
+        return tailSegment;
+    }
+
+    /**
+     * @return true if tail contains all tags
+     */
+    boolean isConstant() {
+        return constant;
+    }
+
+    @Override
+    public String toString() {
+        return name + '|' + type + tags;
+    }
+}
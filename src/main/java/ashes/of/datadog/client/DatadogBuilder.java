@@ -2,6 +2,13 @@ package ashes.of.datadog.client;
 
 import ashes.of.datadog.client.builder.ChannelFactory;
 import ashes.of.datadog.client.builder.DefaultChannelFactory;
+import ashes.of.datadog.client.builder.DefaultTransportFactory;
+import ashes.of.datadog.client.builder.TransportFactory;
+import ashes.of.datadog.client.transport.Transport;
+import ashes.of.datadog.client.transport.UnixSocketTransport;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
 import javax.annotation.Nullable;
@@ -9,6 +16,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.DatagramChannel;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.ThreadFactory;
 import java.util.function.Consumer;
@@ -19,7 +27,7 @@ import java.util.stream.Stream;
 
 public class DatadogBuilder implements Taggable<DatadogBuilder> {
 
-    protected Tags tags = new Tags();
+    protected Tags tags = new Tags(ex -> this.errorHandler.accept(ex));
 
     @Nullable
     private String prefix;
@@ -34,17 +42,161 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
      */
     private int queueSize = 1 << 16;
 
+    /**
+     * Number of ring buffers for producer threads, queue size is split between them
+     */
+    private int shards = 1;
+
+    /**
+     * Size of separate ring for events and service checks, zero if they share the ring with metrics
+     */
+    private int eventLaneSize;
+
+    /**
+     * Number of consumer threads, each sends metrics of its partition through its own channel
+     */
+    private int senders = 1;
+
     /**
      *
      */
     private boolean useDirectMemory;
 
+    /**
+     * What to do with metric when queue is full
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * Uses one contiguous ring of variable length records instead of preallocated buffers
+     */
+    private boolean useByteRing;
+
+    /**
+     * Byte ring size in bytes
+     */
+    private int byteRingSize = 1 << 22;
+
+    /**
+     * Joins metrics into one datagram (newline separated) up to {@link #maxPacketSize}
+     */
+    private boolean usePacking;
+
+    /**
+     * Max time to wait for write readiness of full socket, packet is dropped after it
+     */
+    private Duration sendTimeout = Duration.ZERO;
+
+    /**
+     * Slots of compiled metrics contain only values, head and tail are shared segments
+     */
+    private boolean useGatheringWrites;
+
+    /**
+     * Slots of compiled metrics contain raw values, which are formatted by consumer thread
+     */
+    private boolean useDeferredFormatting;
+
+    /**
+     * Max datagram payload size for packed metrics, fits into ethernet MTU by default
+     */
+    private int maxPacketSize = 1432;
+
+    /**
+     * Max size of event or service check line, agent drops longer lines with its default buffer size
+     */
+    private int maxEventSize = 8192;
+
+    /**
+     * Sums counters on client side and sends them once per {@link #flushInterval}
+     */
+    private boolean aggregateCounters;
+
+    /**
+     * Keeps the last gauge value on client side and sends it once per {@link #flushInterval}
+     */
+    private boolean aggregateGauges;
+
+    /**
+     * Skips aggregated gauges which values weren't changed since the last flush
+     */
+    private boolean skipUnchangedGauges;
+
+    /**
+     * Accumulates distribution values in quantile sketches and sends them once per {@link #flushInterval}
+     */
+    private boolean aggregateDistributions;
+
+    /**
+     * Relative accuracy of distribution sketches
+     */
+    private double distributionAccuracy = 0.01;
+
+    /**
+     * Sends timers as distributions instead of histograms
+     */
+    private boolean timersAsDistributions;
+
+    /**
+     * Interval between flushes of aggregated metrics, agent flushes every 10 seconds by default
+     */
+    private Duration flushInterval = Duration.ofSeconds(10);
+
+    /**
+     * Sends client telemetry as datadog.client.* metrics once per {@link #flushInterval}
+     */
+    private boolean sendTelemetry;
+
+    /**
+     * Max time to send queued metrics on stop
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Stops the client on JVM shutdown
+     */
+    private boolean useShutdownHook;
+
+    /**
+     * Drops metrics before encoding while agent isn't reachable
+     */
+    private boolean suspendOnAgentDown;
+
+    /**
+     * Consecutive port unreachable errors to suspend sending
+     */
+    private int maxAgentFailures = 3;
+
+    /**
+     * Probe intervals while sending is suspended
+     */
+    private Duration minProbeInterval = Duration.ofSeconds(1);
+    private Duration maxProbeInterval = Duration.ofSeconds(30);
+
     /**
      * Agent address, by default agent runs on localhost:8125
      */
     private InetSocketAddress address = new InetSocketAddress("localhost", 8125);
+
+    /**
+     * Path to unix domain socket of agent, null if metrics are sent by UDP to {@link #address}
+     */
+    @Nullable
+    private String unixSocketPath;
     private ThreadFactory threadFactory = new DefaultThreadFactory("datadog-client-%d", true);
+
+    /**
+     * How consumer threads of {@link DisruptorDatadogClient} wait for metrics, null if not set
+     */
+    @Nullable
+    private Supplier<WaitStrategy> waitStrategy;
+
+    /**
+     * Sequencer of {@link DisruptorDatadogClient} ring buffer
+     */
+    private ProducerType producerType = ProducerType.MULTI;
     private ChannelFactory channelFactory = new DefaultChannelFactory();
+    private TransportFactory transportFactory = new DefaultTransportFactory();
     private Consumer<Throwable> errorHandler = ex -> {};
 
 
@@ -87,6 +239,70 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
     }
 
 
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Uses {@link ShardedDatadogClient} on {@link #build()} if there is more than one shard.
+     * Each producer thread publishes into one of ring buffers selected by thread id, so producers don't contend
+     * on one sequence, {@link #queueSize(int)} is split between shards
+     *
+     * @param shards number of ring buffers, should be power of two, about number of cores for highly concurrent producers
+     * @return builder
+     */
+    public DatadogBuilder shards(int shards) {
+        if (shards < 1 || Integer.bitCount(shards) != 1)
+            throw new IllegalArgumentException("Number of shards should be power of two: " + shards);
+
+        this.shards = shards;
+        return this;
+    }
+
+
+    public int getEventLaneSize() {
+        return eventLaneSize;
+    }
+
+    /**
+     * Uses {@link ShardedDatadogClient} on {@link #build()} with a separate ring for events and service checks,
+     * so a burst of events doesn't delay metrics and a flood of metrics doesn't drop service checks.
+     * Consumer polls events first in each round, but not more than a small batch
+     *
+     * @param eventLaneSize size of ring for events and service checks, should be power of two
+     * @return builder
+     */
+    public DatadogBuilder eventLane(int eventLaneSize) {
+        if (eventLaneSize < 1 || Integer.bitCount(eventLaneSize) != 1)
+            throw new IllegalArgumentException("Event lane size should be power of two: " + eventLaneSize);
+
+        this.eventLaneSize = eventLaneSize;
+        return this;
+    }
+
+
+    public int getSenders() {
+        return senders;
+    }
+
+    /**
+     * Sends metrics from several consumer threads of {@link DisruptorDatadogClient}, each thread has its own
+     * channel from {@link #channelFactory(ChannelFactory)}. Metrics are partitioned by name,
+     * so metrics with the same name are sent by the same thread in order they were published.
+     * Other clients have one consumer thread and reject several senders, so senders can't be used with shards, event lane or byte ring
+     *
+     * @param senders number of consumer threads
+     * @return builder
+     */
+    public DatadogBuilder senders(int senders) {
+        if (senders < 1)
+            throw new IllegalArgumentException("Number of senders should be positive: " + senders);
+
+        this.senders = senders;
+        return this;
+    }
+
+
     public boolean isDirectMemoryUsed() {
         return useDirectMemory;
     }
@@ -96,6 +312,315 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
         return this;
     }
 
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Sets what client does with metric when queue is full, callers are blocked by default.
+     * Dropped metrics are counted in {@link DatadogClient#getDroppedMetrics()}
+     * and reported to error handler once per flush interval
+     *
+     * @param overflowPolicy overflow policy
+     * @return builder
+     */
+    public DatadogBuilder overflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "Overflow policy is null");
+        return this;
+    }
+
+
+    public boolean isByteRingUsed() {
+        return useByteRing;
+    }
+
+    /**
+     * Uses {@link ByteRingDatadogClient} on {@link #build()}.
+     * Metrics are stored in one contiguous ring of {@link #byteRingSize(int)} bytes,
+     * instead of {@link #queueSize(int)} preallocated buffers of {@link #bufferSize(int)} bytes
+     *
+     * @return builder
+     */
+    public DatadogBuilder useByteRing() {
+        this.useByteRing = true;
+        return this;
+    }
+
+
+    public int getByteRingSize() {
+        return byteRingSize;
+    }
+
+    /**
+     * Sets byte ring size, max size of one metric is a quarter of ring size
+     *
+     * @param byteRingSize ring size in bytes, should be power of two, 4 MB by default
+     * @return builder
+     */
+    public DatadogBuilder byteRingSize(int byteRingSize) {
+        if (byteRingSize < 1024 || Integer.bitCount(byteRingSize) != 1)
+            throw new IllegalArgumentException("Byte ring size should be power of two and not less than 1024: " + byteRingSize);
+
+        this.byteRingSize = byteRingSize;
+        return this;
+    }
+
+
+    public boolean isPackingUsed() {
+        return usePacking;
+    }
+
+    /**
+     * Enables packing of multiple metrics into one datagram.
+     * Metrics are joined until the end of the batch or until {@link #maxPacketSize(int)} is reached
+     *
+     * @return builder
+     */
+    public DatadogBuilder usePacking() {
+        this.usePacking = true;
+        return this;
+    }
+
+
+    public Duration getSendTimeout() {
+        return sendTimeout;
+    }
+
+    /**
+     * If socket buffer is full, consumer thread waits for write readiness of UDP channel up to timeout for each packet,
+     * it's a trade-off between loss of packets on bursts and stall of consumer. By default packet is dropped immediately
+     *
+     * @param sendTimeout max time to wait for each packet, zero to drop packets immediately
+     * @return builder
+     */
+    public DatadogBuilder sendTimeout(Duration sendTimeout) {
+        Objects.requireNonNull(sendTimeout, "Send timeout is null");
+        if (sendTimeout.isNegative())
+            throw new IllegalArgumentException("Send timeout should not be negative: " + sendTimeout);
+
+        this.sendTimeout = sendTimeout;
+        return this;
+    }
+
+
+    public boolean isGatheringWritesUsed() {
+        return useGatheringWrites;
+    }
+
+    /**
+     * Producers of compiled metrics with constant tags write only the value into ring buffer slot, prefix, name
+     * and tags are shared pre-encoded segments of the metric. Without packing the line is sent by gathering write
+     * of segments and the value, with packing segments are copied into packet on consumer thread.
+     * Used by ring buffer clients, byte ring copies whole lines
+     *
+     * @return builder
+     */
+    public DatadogBuilder useGatheringWrites() {
+        this.useGatheringWrites = true;
+        return this;
+    }
+
+
+    public boolean isDeferredFormattingUsed() {
+        return useDeferredFormatting;
+    }
+
+    /**
+     * Producers of compiled metrics with constant tags don't format anything, ring buffer slot gets only
+     * the metric, which is the interned key with name, type, sample rate and tags, and the raw long or double value.
+     * Value is formatted by consumer thread and the line is sent the same way as with {@link #useGatheringWrites()}.
+     *
+     * Slot buffers are allocated on the first line written into the slot, so slots which carry only records
+     * don't allocate buffers. Other metrics, events and service checks are still formatted by producers into slot buffers,
+     * so if most metrics are compiled, slots may be much smaller with {@link #bufferSize(int)},
+     * slots grown by longer lines are shrunk on reuse.
+     * Used by ring buffer clients, byte ring copies whole lines
+     *
+     * @return builder
+     */
+    public DatadogBuilder useDeferredFormatting() {
+        this.useDeferredFormatting = true;
+        return this;
+    }
+
+
+    public int getMaxPacketSize() {
+        return maxPacketSize;
+    }
+
+    /**
+     * Sets max datagram payload size for packed metrics
+     *
+     * @param maxPacketSize max payload size in bytes
+     * @return builder
+     */
+    public DatadogBuilder maxPacketSize(int maxPacketSize) {
+        if (maxPacketSize <= 0)
+            throw new IllegalArgumentException("Max packet size should be positive: " + maxPacketSize);
+
+        this.maxPacketSize = maxPacketSize;
+        return this;
+    }
+
+
+    public int getMaxEventSize() {
+        return maxEventSize;
+    }
+
+    /**
+     * Sets max size of event or service check line, text of event or message of service check is truncated to fit.
+     * Slot buffers which grew for a bigger line are returned to {@link #bufferSize(int)} when they are reused
+     *
+     * @param maxEventSize max line size in bytes, 8192 by default
+     * @return builder
+     */
+    public DatadogBuilder maxEventSize(int maxEventSize) {
+        if (maxEventSize <= 0)
+            throw new IllegalArgumentException("Max event size should be positive: " + maxEventSize);
+
+        this.maxEventSize = maxEventSize;
+        return this;
+    }
+
+
+    public boolean isCounterAggregationUsed() {
+        return aggregateCounters;
+    }
+
+    /**
+     * Enables client side aggregation of counters.
+     * Counter deltas are summed per metric name and tags and sent once per flush interval
+     *
+     * @return builder
+     */
+    public DatadogBuilder aggregateCounters() {
+        this.aggregateCounters = true;
+        return this;
+    }
+
+
+    public boolean isGaugeAggregationUsed() {
+        return aggregateGauges;
+    }
+
+    /**
+     * Enables client side aggregation of gauges.
+     * Only the last value of a gauge is kept per metric name and tags and sent once per flush interval
+     *
+     * @return builder
+     */
+    public DatadogBuilder aggregateGauges() {
+        this.aggregateGauges = true;
+        return this;
+    }
+
+
+    public boolean isUnchangedGaugesSkipped() {
+        return skipUnchangedGauges;
+    }
+
+    /**
+     * Enables client side aggregation of gauges and skips gauges
+     * which values weren't changed since the last flush
+     *
+     * @return builder
+     */
+    public DatadogBuilder skipUnchangedGauges() {
+        this.aggregateGauges = true;
+        this.skipUnchangedGauges = true;
+        return this;
+    }
+
+
+    public boolean isDistributionAggregationUsed() {
+        return aggregateDistributions;
+    }
+
+    /**
+     * Enables client side aggregation of distributions.
+     * Values are accumulated in quantile sketches per metric name and tags,
+     * sketches are sent as compact multi-value lines once per flush interval
+     *
+     * @return builder
+     */
+    public DatadogBuilder aggregateDistributions() {
+        this.aggregateDistributions = true;
+        return this;
+    }
+
+
+    public double getDistributionAccuracy() {
+        return distributionAccuracy;
+    }
+
+    /**
+     * Sets relative accuracy of aggregated distributions
+     *
+     * @param accuracy relative accuracy in (0, 1) range, 0.01 by default
+     * @return builder
+     */
+    public DatadogBuilder distributionAccuracy(double accuracy) {
+        if (accuracy <= 0 || accuracy >= 1)
+            throw new IllegalArgumentException("Distribution accuracy should be in (0, 1) range: " + accuracy);
+
+        this.distributionAccuracy = accuracy;
+        return this;
+    }
+
+
+    public boolean isTimersAsDistributionsUsed() {
+        return timersAsDistributions;
+    }
+
+    /**
+     * Sends timers as distributions instead of histograms
+     *
+     * @return builder
+     */
+    public DatadogBuilder sendTimersAsDistributions() {
+        this.timersAsDistributions = true;
+        return this;
+    }
+
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Sets interval between flushes of aggregated metrics, reports of dropped metrics and telemetry
+     *
+     * @param flushInterval flush interval
+     * @return builder
+     */
+    public DatadogBuilder flushInterval(Duration flushInterval) {
+        Objects.requireNonNull(flushInterval, "Flush interval is null");
+        if (flushInterval.isNegative() || flushInterval.isZero())
+            throw new IllegalArgumentException("Flush interval should be positive: " + flushInterval);
+
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+
+    public boolean isTelemetrySent() {
+        return sendTelemetry;
+    }
+
+    /**
+     * Sends client telemetry once per flush interval as metrics without prefix:
+     * datadog.client.metrics, events, service_checks, packets, bytes, errors and dropped counters,
+     * datadog.client.queue.depth and queue.capacity gauges.
+     * Telemetry is always available via {@link DatadogClient#getTelemetry()}
+     *
+     * @return builder
+     */
+    public DatadogBuilder sendTelemetry() {
+        this.sendTelemetry = true;
+        return this;
+    }
+
     /**
      * @see this#address(InetSocketAddress)
      */
@@ -112,6 +637,118 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
         return this;
     }
 
+
+    @Nullable
+    public String getUnixSocketPath() {
+        return unixSocketPath;
+    }
+
+    /**
+     * Sends metrics to stream unix domain socket of agent instead of UDP address, requires Java 16+.
+     * Stream socket should be enabled in agent by {@code dogstatsd_stream_socket}, the default socket
+     * of agent ({@code dogstatsd_socket}, /var/run/datadog/dsd.socket) is a datagram socket and doesn't accept stream connections.
+     * Socket file isn't limited by UDP payload size, so packing with bigger {@link #maxPacketSize(int)}, e.g. 8192, is recommended
+     *
+     * @param path path to stream socket file of agent, value of {@code dogstatsd_stream_socket}, e.g. /var/run/datadog/dsd.stream.socket
+     * @return builder
+     * @see UnixSocketTransport
+     */
+    public DatadogBuilder unixSocket(String path) {
+        Objects.requireNonNull(path, "Unix socket path is null");
+        this.unixSocketPath = path;
+        return this;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    /**
+     * On stop the client sends aggregated metrics and waits until queued metrics are sent, but not longer than timeout
+     *
+     * @param shutdownTimeout max time to drain the queue on stop, 5 seconds by default
+     * @return builder
+     */
+    public DatadogBuilder shutdownTimeout(Duration shutdownTimeout) {
+        Objects.requireNonNull(shutdownTimeout, "Shutdown timeout is null");
+        if (shutdownTimeout.isNegative())
+            throw new IllegalArgumentException("Shutdown timeout should not be negative: " + shutdownTimeout);
+
+        this.shutdownTimeout = shutdownTimeout;
+        return this;
+    }
+
+
+    public boolean isShutdownHookUsed() {
+        return useShutdownHook;
+    }
+
+    /**
+     * Stops the client on JVM shutdown, so queued metrics aren't lost on exit
+     *
+     * @return builder
+     */
+    public DatadogBuilder useShutdownHook() {
+        this.useShutdownHook = true;
+        return this;
+    }
+
+
+    public boolean isSuspendedOnAgentDown() {
+        return suspendOnAgentDown;
+    }
+
+    public int getMaxAgentFailures() {
+        return maxAgentFailures;
+    }
+
+    public Duration getMinProbeInterval() {
+        return minProbeInterval;
+    }
+
+    public Duration getMaxProbeInterval() {
+        return maxProbeInterval;
+    }
+
+    /**
+     * Suspends sending after 3 consecutive port unreachable errors, agent is probed every 1 to 30 seconds
+     *
+     * @return builder
+     * @see #suspendOnAgentDown(int, Duration, Duration)
+     */
+    public DatadogBuilder suspendOnAgentDown() {
+        return suspendOnAgentDown(maxAgentFailures, minProbeInterval, maxProbeInterval);
+    }
+
+    /**
+     * Suspends sending while agent isn't reachable: metrics are dropped by producers before encoding and
+     * agent is probed with exponentially growing interval, sending is resumed after successful probe.
+     * Error handler receives {@link AgentUnreachableException} on each suspension.
+     * Only UDP transport detects unreachable agent
+     *
+     * @param failures consecutive port unreachable errors to suspend sending
+     * @param minProbeInterval interval before the first probe
+     * @param maxProbeInterval max interval between probes
+     * @return builder
+     */
+    public DatadogBuilder suspendOnAgentDown(int failures, Duration minProbeInterval, Duration maxProbeInterval) {
+        Objects.requireNonNull(minProbeInterval, "Min probe interval is null");
+        Objects.requireNonNull(maxProbeInterval, "Max probe interval is null");
+        if (failures < 1)
+            throw new IllegalArgumentException("Failures should be positive: " + failures);
+
+        if (minProbeInterval.isNegative() || minProbeInterval.isZero() || maxProbeInterval.compareTo(minProbeInterval) < 0)
+            throw new IllegalArgumentException("Probe intervals should be positive and min should not exceed max: " +
+                    minProbeInterval + ", " + maxProbeInterval);
+
+        this.suspendOnAgentDown = true;
+        this.maxAgentFailures = failures;
+        this.minProbeInterval = minProbeInterval;
+        this.maxProbeInterval = maxProbeInterval;
+        return this;
+    }
+
+
     public InetSocketAddress getAddress() {
         return address;
     }
@@ -128,6 +765,17 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
         }
     }
 
+    /**
+     * @return new transport, created for each consumer thread
+     */
+    public Transport newTransport() {
+        try {
+            return transportFactory.createTransport(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     public ChannelFactory getChannelFactory() {
         return channelFactory;
     }
@@ -140,6 +788,24 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
 
 
 
+    public TransportFactory getTransportFactory() {
+        return transportFactory;
+    }
+
+    /**
+     * Replaces transport of packets, by default metrics are sent by UDP to {@link #address(InetSocketAddress)}
+     * with channel from {@link #channelFactory(ChannelFactory)} or to {@link #unixSocket(String)} if it's set
+     *
+     * @param transportFactory factory of transport, invoked for each consumer thread
+     * @return builder
+     */
+    public DatadogBuilder transportFactory(TransportFactory transportFactory) {
+        Objects.requireNonNull(transportFactory, "Transport factory is null");
+        this.transportFactory = transportFactory;
+        return this;
+    }
+
+
     public ThreadFactory getThreadFactory() {
         return threadFactory;
     }
@@ -151,6 +817,53 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
     }
 
 
+    public WaitStrategy newWaitStrategy() {
+        return waitStrategy != null ? waitStrategy.get() : new BlockingWaitStrategy();
+    }
+
+    public boolean isWaitStrategySet() {
+        return waitStrategy != null;
+    }
+
+    /**
+     * Wait strategy of {@link DisruptorDatadogClient} consumer threads, {@link BlockingWaitStrategy} by default.
+     * Other clients poll their rings and reject this option.
+     * <ul>
+     *     <li>{@code BlockingWaitStrategy} and {@code LiteBlockingWaitStrategy} use the least CPU, but producers signal the lock</li>
+     *     <li>{@code SleepingWaitStrategy} is cheap for producers and saves CPU for batch jobs, latency is higher</li>
+     *     <li>{@code YieldingWaitStrategy} and {@code BusySpinWaitStrategy} give the lowest latency, but consume a core per consumer thread</li>
+     *     <li>{@code PhasedBackoffWaitStrategy.withLiteLock(...)} spins and yields for a while, then falls back to the lock</li>
+     * </ul>
+     *
+     * @param waitStrategy creates wait strategy for each client
+     * @return builder
+     */
+    public DatadogBuilder waitStrategy(Supplier<WaitStrategy> waitStrategy) {
+        Objects.requireNonNull(waitStrategy, "Wait strategy is null");
+        this.waitStrategy = waitStrategy;
+        return this;
+    }
+
+
+    public ProducerType getProducerType() {
+        return producerType;
+    }
+
+    /**
+     * Single producer ring buffer of {@link DisruptorDatadogClient} doesn't use CAS to claim slots, but metrics
+     * should be published by only one thread. Aggregation and telemetry publish from flushing thread,
+     * so they can't be used with single producer. Other clients reject single producer
+     *
+     * @param producerType sequencer type, {@link ProducerType#MULTI} by default
+     * @return builder
+     */
+    public DatadogBuilder producerType(ProducerType producerType) {
+        Objects.requireNonNull(producerType, "Producer type is null");
+        this.producerType = producerType;
+        return this;
+    }
+
+
 
 
     public DatadogBuilder errorHandler(Consumer<Throwable> errorHandler) {
@@ -162,6 +875,12 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
         return errorHandler;
     }
 
+    @Override
+    public DatadogBuilder tag(String tag) {
+        tags.tag(tag);
+        return this;
+    }
+
     @Override
     public DatadogBuilder tag(String tag, Supplier<Object> sub) {
         tags.tag(tag, sub);
@@ -183,10 +902,16 @@ public class DatadogBuilder implements Taggable<DatadogBuilder> {
     }
 
     /**
-     * @return build {@link DisruptorDatadogClient} and returns it
+     * @return build {@link DisruptorDatadogClient}, {@link ByteRingDatadogClient} if byte ring is used
+     * or {@link ShardedDatadogClient} if there are several shards or event lane and returns it
      */
     public DatadogClient build() {
-        return build(DisruptorDatadogClient::new);
+        if (useByteRing)
+            return build(ByteRingDatadogClient::new);
+
+        return shards > 1 || eventLaneSize > 0 ?
+                build(ShardedDatadogClient::new) :
+                build(DisruptorDatadogClient::new);
     }
 
     /**
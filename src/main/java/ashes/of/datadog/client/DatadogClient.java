@@ -3,6 +3,8 @@ package ashes.of.datadog.client;
 import ashes.of.datadog.client.metrics.*;
 import ashes.of.datadog.client.metrics.ServiceCheck.Status;
 
+import java.time.Duration;
+
 
 /**
  * Client connection to a datadog local agent, which may be used to post metrics
@@ -11,10 +13,45 @@ import ashes.of.datadog.client.metrics.ServiceCheck.Status;
 public interface DatadogClient {
 
     /**
-     * Cleanly shut down this client.
+     * Cleanly shut down this client: stops accepting new metrics, sends aggregated and queued metrics
+     * within shutdown timeout and closes the channel.
+     *
+     * @see DatadogBuilder#shutdownTimeout(Duration)
      */
     void stop();
 
+    /**
+     * @return true if the client is stopped, refreshed tags of its metrics stop refreshing then
+     */
+    default boolean isStopped() {
+        return false;
+    }
+
+    /**
+     * @return counters of metrics dropped because queue was full, empty counters if client doesn't drop metrics
+     * @see DatadogBuilder#overflowPolicy(OverflowPolicy)
+     */
+    default DroppedMetrics getDroppedMetrics() {
+        return new DroppedMetrics();
+    }
+
+    /**
+     * @return counters of the client itself, empty counters if client doesn't collect telemetry
+     * @see DatadogBuilder#sendTelemetry()
+     */
+    default ClientTelemetry getTelemetry() {
+        return new ClientTelemetry(getDroppedMetrics(), () -> 0, () -> 0);
+    }
+
+    /**
+     * Passes error to error handler of the client, e.g. exception of refreshed tag supplier
+     *
+     * @param th error
+     * @see DatadogBuilder#errorHandler(java.util.function.Consumer)
+     */
+    default void handleError(Throwable th) {
+    }
+
 
     /**
      * Adjusts counter by a given value
@@ -29,6 +66,25 @@ public interface DatadogClient {
 
     void count(String metric, long value, Tags tags);
 
+    /**
+     * Adjusts counter by a given value with probability of sample rate, agent multiplies the value by 1/rate
+     *
+     * @param metric counter name
+     * @param value counter value
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void count(String metric, long value, double sampleRate, String... tags) {
+        count(metric, value, sampleRate, new Tags().tags(tags));
+    }
+
+    /**
+     * Clients which don't override this method don't sample counters and send each value
+     */
+    default void count(String metric, long value, double sampleRate, Tags tags) {
+        count(metric, value, tags);
+    }
+
     /**
      * Increments the specified counter by one
      *
@@ -109,13 +165,29 @@ public interface DatadogClient {
      * @param tags additional tags
      */
     default void millis(String metric, long millis, String... tags) {
-        histogram(metric, millis / 1_000., new Tags().tags(tags));
+        millis(metric, millis, new Tags().tags(tags));
     }
 
     default void millis(String metric, long millis, Tags tags) {
         histogram(metric, millis / 1_000., tags);
     }
 
+    /**
+     * Records time in milliseconds with probability of sample rate
+     *
+     * @param metric timer name
+     * @param millis time in milliseconds
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void millis(String metric, long millis, double sampleRate, String... tags) {
+        millis(metric, millis, sampleRate, new Tags().tags(tags));
+    }
+
+    default void millis(String metric, long millis, double sampleRate, Tags tags) {
+        histogram(metric, millis / 1_000., sampleRate, tags);
+    }
+
     /**
      * Records time in nanoseconds
      *
@@ -124,13 +196,29 @@ public interface DatadogClient {
      * @param tags additional tags
      */
     default void nanos(String metric, long nanos, String... tags) {
-        histogram(metric, nanos / 1_000_000_000., new Tags().tags(tags));
+        nanos(metric, nanos, new Tags().tags(tags));
     }
 
     default void nanos(String metric, long nanos, Tags tags) {
         histogram(metric, nanos / 1_000_000_000., tags);
     }
 
+    /**
+     * Records time in nanoseconds with probability of sample rate
+     *
+     * @param metric timer name
+     * @param nanos time in nanoseconds
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void nanos(String metric, long nanos, double sampleRate, String... tags) {
+        nanos(metric, nanos, sampleRate, new Tags().tags(tags));
+    }
+
+    default void nanos(String metric, long nanos, double sampleRate, Tags tags) {
+        histogram(metric, nanos / 1_000_000_000., sampleRate, tags);
+    }
+
     /**
      * @param metric timer name
      * @return new timer
@@ -153,6 +241,25 @@ public interface DatadogClient {
 
     void histogram(String metric, double value, Tags tags);
 
+    /**
+     * Records a value for the histogram with probability of sample rate
+     *
+     * @param metric histogram name
+     * @param value histogram value
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void histogram(String metric, double value, double sampleRate, String... tags) {
+        histogram(metric, value, sampleRate, new Tags().tags(tags));
+    }
+
+    /**
+     * Clients which don't override this method don't sample histograms and send each value
+     */
+    default void histogram(String metric, double value, double sampleRate, Tags tags) {
+        histogram(metric, value, tags);
+    }
+
     /**
      * Records a value for the histogram
      *
@@ -166,6 +273,25 @@ public interface DatadogClient {
 
     void histogram(String metric, long value, Tags tags);
 
+    /**
+     * Records a value for the histogram with probability of sample rate
+     *
+     * @param metric histogram name
+     * @param value histogram value
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void histogram(String metric, long value, double sampleRate, String... tags) {
+        histogram(metric, value, sampleRate, new Tags().tags(tags));
+    }
+
+    /**
+     * Clients which don't override this method don't sample histograms and send each value
+     */
+    default void histogram(String metric, long value, double sampleRate, Tags tags) {
+        histogram(metric, value, tags);
+    }
+
     /**
      * @param metric histogram name
      * @return new histogram
@@ -175,6 +301,81 @@ public interface DatadogClient {
     }
 
 
+    /**
+     * Records a value for the distribution
+     *
+     * @param metric distribution name
+     * @param value distribution value
+     * @param tags additional tags
+     */
+    default void distribution(String metric, double value, String... tags) {
+        distribution(metric, value, new Tags().tags(tags));
+    }
+
+    void distribution(String metric, double value, Tags tags);
+
+    /**
+     * Records a value for the distribution with probability of sample rate
+     *
+     * @param metric distribution name
+     * @param value distribution value
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void distribution(String metric, double value, double sampleRate, String... tags) {
+        distribution(metric, value, sampleRate, new Tags().tags(tags));
+    }
+
+    /**
+     * Clients which don't override this method don't sample distributions and send each value
+     */
+    default void distribution(String metric, double value, double sampleRate, Tags tags) {
+        distribution(metric, value, tags);
+    }
+
+    /**
+     * Records a value for the distribution
+     *
+     * @param metric distribution name
+     * @param value distribution value
+     * @param tags additional tags
+     */
+    default void distribution(String metric, long value, String... tags) {
+        distribution(metric, value, new Tags().tags(tags));
+    }
+
+    default void distribution(String metric, long value, Tags tags) {
+        distribution(metric, (double) value, tags);
+    }
+
+    /**
+     * Records a value for the distribution with probability of sample rate
+     *
+     * @param metric distribution name
+     * @param value distribution value
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags additional tags
+     */
+    default void distribution(String metric, long value, double sampleRate, String... tags) {
+        distribution(metric, value, sampleRate, new Tags().tags(tags));
+    }
+
+    /**
+     * Clients which don't override this method don't sample distributions and send each value
+     */
+    default void distribution(String metric, long value, double sampleRate, Tags tags) {
+        distribution(metric, value, tags);
+    }
+
+    /**
+     * @param metric distribution name
+     * @return new distribution
+     */
+    default Distribution distribution(String metric) {
+        return new Distribution(this, metric);
+    }
+
+
     /**
      * Records a value for the set
      *
@@ -210,6 +411,124 @@ public interface DatadogClient {
     }
 
 
+    /**
+     * Freezes metric name, type and tags for repeated sends
+     *
+     * @param metric metric name
+     * @param type metric type
+     * @param tags metric tags
+     * @return compiled metric
+     */
+    default CompiledMetric compile(String metric, MetricType type, Tags tags) {
+        return compile(metric, type, 1, tags);
+    }
+
+    /**
+     * Freezes metric name, type, sample rate and tags for repeated sends
+     *
+     * @param metric metric name
+     * @param type metric type
+     * @param sampleRate sample rate in (0, 1] range, not supported by gauges and sets
+     * @param tags metric tags
+     * @return compiled metric
+     */
+    default CompiledMetric compile(String metric, MetricType type, double sampleRate, Tags tags) {
+        return new CompiledMetric(metric, type, sampleRate, tags);
+    }
+
+    /**
+     * Freezes timer name and tags for repeated sends
+     *
+     * @param metric timer name
+     * @param tags timer tags
+     * @return compiled timer
+     */
+    default CompiledMetric compileTimer(String metric, Tags tags) {
+        return compileTimer(metric, 1, tags);
+    }
+
+    /**
+     * Freezes timer name, sample rate and tags for repeated sends
+     *
+     * @param metric timer name
+     * @param sampleRate sample rate in (0, 1] range
+     * @param tags timer tags
+     * @return compiled timer
+     */
+    default CompiledMetric compileTimer(String metric, double sampleRate, Tags tags) {
+        return compile(metric, MetricType.HISTOGRAM, sampleRate, tags);
+    }
+
+    /**
+     * Records a value for compiled metric
+     *
+     * @param metric compiled metric
+     * @param value value
+     */
+    default void record(CompiledMetric metric, long value) {
+        String name = metric.getName();
+        Tags tags = metric.getTags();
+        switch (metric.getType()) {
+            case COUNTER:
+                count(name, value, metric.getSampleRate(), tags);
+                break;
+            case GAUGE:
+                gauge(name, value, tags);
+                break;
+            case HISTOGRAM:
+                histogram(name, value, metric.getSampleRate(), tags);
+                break;
+            case DISTRIBUTION:
+                distribution(name, value, metric.getSampleRate(), tags);
+                break;
+            case SET:
+                set(name, value, tags);
+                break;
+        }
+    }
+
+    /**
+     * Records a value for compiled metric
+     *
+     * @param metric compiled metric
+     * @param value value
+     */
+    default void record(CompiledMetric metric, double value) {
+        String name = metric.getName();
+        Tags tags = metric.getTags();
+        switch (metric.getType()) {
+            case COUNTER:
+                count(name, (long) value, metric.getSampleRate(), tags);
+                break;
+            case GAUGE:
+                gauge(name, value, tags);
+                break;
+            case HISTOGRAM:
+                histogram(name, value, metric.getSampleRate(), tags);
+                break;
+            case DISTRIBUTION:
+                distribution(name, value, metric.getSampleRate(), tags);
+                break;
+            case SET:
+                set(name, String.valueOf(value), tags);
+                break;
+        }
+    }
+
+    /**
+     * Records a value for compiled set
+     *
+     * @param metric compiled set
+     * @param value value
+     */
+    default void record(CompiledMetric metric, String value) {
+        if (metric.getType() != MetricType.SET)
+            throw new IllegalArgumentException("String values are supported only by sets: " + metric);
+
+        set(metric.getName(), value, metric.getTags());
+    }
+
+
     /**
      * @param event event to send
      */
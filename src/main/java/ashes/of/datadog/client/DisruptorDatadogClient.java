@@ -1,32 +1,32 @@
 package ashes.of.datadog.client;
 
-import ashes.of.datadog.client.metrics.Event;
-import ashes.of.datadog.client.metrics.MetricType;
-import ashes.of.datadog.client.utils.BufferFormatter;
-import ashes.of.datadog.client.metrics.ServiceCheck;
-import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.EventHandler;
 import com.lmax.disruptor.ExceptionHandler;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 
-import javax.annotation.Nullable;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.DatagramChannel;
-import java.util.List;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Client with one ring buffer and one or several consumer threads.
+ *
+ * If there are several senders, each consumer thread sends only metrics of its partition through its own channel,
+ * metrics are partitioned by name, so metrics with the same name keep their order
+ */
+public class DisruptorDatadogClient extends RingBufferDatadogClient {
 
-public class DisruptorDatadogClient extends AbstractDatadogClient {
+    /**
+     * Park time between checks of the queue on stop
+     */
+    private static final long DRAIN_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
-    private final DatagramChannel channel;
-    private final Disruptor<ByteBuf> disruptor;
-    private final RingBuffer<ByteBuf> buffer;
+    private final PacketSender[] senders;
+    private final Disruptor<MetricSlot> disruptor;
+    private final RingBuffer<MetricSlot> buffer;
 
 
     /**
@@ -34,14 +34,23 @@ public class DisruptorDatadogClient extends AbstractDatadogClient {
      */
     public DisruptorDatadogClient(DatadogBuilder b) {
         super(b);
-        this.channel = b.newChannel();
+        if (b.getProducerType() == ProducerType.SINGLE && (isAggregationUsed() || b.isTelemetrySent()))
+            throw new IllegalArgumentException("Single producer can't be used with aggregation or telemetry, they publish from flushing thread");
+
+        if (b.getEventLaneSize() > 0)
+            throw new IllegalArgumentException("Event lane is supported only by " + ShardedDatadogClient.class.getSimpleName());
+
+        this.senders = new PacketSender[b.getSenders()];
+        for (int i = 0; i < senders.length; i++)
+            senders[i] = new PacketSender(b, telemetry, health);
+
         this.disruptor = new Disruptor<>(newEventFactory(b.isDirectMemoryUsed(), b.getBufferSize()),
-                b.getQueueSize(), b.getThreadFactory());
+                b.getQueueSize(), b.getThreadFactory(), b.getProducerType(), b.newWaitStrategy());
 
-        this.disruptor.handleEventsWith(this::handleEvent);
-        this.disruptor.setDefaultExceptionHandler(new ExceptionHandler<ByteBuf>() {
+        this.disruptor.handleEventsWith(newHandlers(senders));
+        this.disruptor.setDefaultExceptionHandler(new ExceptionHandler<MetricSlot>() {
             @Override
-            public void handleEventException(Throwable ex, long sequence, ByteBuf event) {
+            public void handleEventException(Throwable ex, long sequence, MetricSlot event) {
                 errorHandler.accept(ex);
             }
 
@@ -57,206 +66,92 @@ public class DisruptorDatadogClient extends AbstractDatadogClient {
         });
 
         this.buffer = disruptor.start();
-    }
-
-    private static EventFactory<ByteBuf> newEventFactory(boolean directMemoryUsed, int bufferSize) {
-        return () -> directMemoryUsed ?
-                Unpooled.directBuffer(bufferSize) :
-                Unpooled.buffer(bufferSize);
-    }
-
-
-    private void handleEvent(ByteBuf buf, long seq, boolean eob) throws Exception {
-        ByteBuffer nio = buf.nioBuffer();
-
-        int remaining = nio.remaining();
-        int sent = channel.write(nio);
-
-        if (remaining != sent)
-            throw new IOException(String.format("Sent only %d bytes of %d bytes", sent, remaining));
-    }
-
-    @Override
-    public void stop() {
-        disruptor.halt();
-    }
-
 
-    @Override
-    protected void send(String metric, long value, MetricType type, Tags tags) {
-        buffer.publishEvent((b, seq) -> writeMetric(b, prefix, metric, type, tags, buf -> BufferFormatter.append(b, value) ));
+        start();
     }
 
-    @Override
-    protected void send(String metric, double value, MetricType type, Tags tags) {
-        buffer.publishEvent((b, seq) -> writeMetric(b, prefix, metric, type, tags, buf -> BufferFormatter.append(buf, value, 6, false) ));
-    }
 
-    @Override
-    protected void send(String metric, String value, MetricType type, Tags tags) {
-        buffer.publishEvent((b, seq) -> writeMetric(b, prefix, metric, type, tags, buf -> BufferFormatter.append(b, value) ));
-    }
-
-    private void writeMetric(ByteBuf b, @Nullable String prefix, String metric, MetricType type, Tags tags, Consumer<ByteBuf> valueWriter) {
-        b.clear();
-
-        if (prefix != null) {
-            b.writeCharSequence(prefix, UTF_8);
-            b.writeByte('.');
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static EventHandler<MetricSlot>[] newHandlers(PacketSender[] senders) {
+        if (senders.length == 1) {
+            PacketSender sender = senders[0];
+            return new EventHandler[] { (EventHandler<MetricSlot>) (slot, seq, eob) -> sender.send(slot, eob) };
         }
-        b.writeCharSequence(metric, UTF_8);
-        b.writeByte(':');
-
-        valueWriter.accept(b);
-
-        b.writeByte('|');
-        b.writeByte(type.getType());
 
-
-        writeTags(b, global, tags);
-    }
-
-    private void writeTags(ByteBuf b, Tags global, Tags metric) {
-        boolean hasGlobalTags = !global.isEmpty();
-        boolean hasAdditionalTags = !metric.isEmpty();
-        if (hasGlobalTags || hasAdditionalTags) {
-            b.writeByte('|');
-            b.writeByte('#');
+        EventHandler<MetricSlot>[] handlers = new EventHandler[senders.length];
+        for (int i = 0; i < senders.length; i++) {
+            int partition = i;
+            PacketSender sender = senders[i];
+            handlers[i] = (slot, seq, eob) -> {
+                if (partition(slot, senders.length) == partition) {
+                    sender.send(slot, eob);
+                } else if (eob) {
+                    // packet of this sender shouldn't wait for the next metric of its partition
+                    sender.flush();
+                }
+            };
         }
 
-        writeTags(b, global);
-
-        if (!hasAdditionalTags)
-            return;
-
-        if (hasGlobalTags)
-            b.writeByte(',');
-
-        writeTags(b, metric);
+        return handlers;
     }
 
-    private void writeTags(ByteBuf b, Tags tags) {
-        List<Supplier<String>> list = tags.list();
-        for (int i = 0; i < list.size(); i++) {
-            String tag = list.get(i).get();
-
-            b.writeCharSequence(tag, UTF_8);
-            if (i < list.size() - 1)
-                b.writeByte(',');
-        }
-    }
-
-
     /**
-     * @param event event
+     * @return partition of the line by its name, which ends with ':' for metrics and events or with '|' for service checks
      */
-    @Override
-    public void event(Event event) {
-        buffer.publishEvent((b, seq) -> writeEvent(b, event));
-    }
-
-
-    /**
-     * _e{title.length,text.length}:title|text|d:date_happened|h:hostname|p:priority|t:alert_type|#tag1,tag2
-     *
-     * @param b buffer
-     * @param event event to write
-     */
-    private void writeEvent(ByteBuf b, Event event) {
-        String title = event.getTitle();
-        String text = event.getText();
-
-        b.clear();
-        b.writeCharSequence("_e{", UTF_8);
-        BufferFormatter.append(b, title.length());
-        b.writeByte(',');
-        BufferFormatter.append(b, text.length());
-        b.writeByte('}');
-        b.writeByte(':');
-        b.writeCharSequence(title, UTF_8);
-        b.writeByte('|');
-        b.writeCharSequence(text, UTF_8);
-
-        if (event.getTime() > 0) {
-            b.writeCharSequence("|d:", UTF_8);
-            BufferFormatter.append(b, event.getTime() / 1000);
-        }
-
-        String hostname = event.getHostname();
-        if (hostname != null) {
-            b.writeCharSequence("|h:", UTF_8);
-            b.writeCharSequence(hostname, UTF_8);
-        }
-
-        String aggregationKey = event.getAggregationKey();
-        if (aggregationKey != null) {
-            b.writeCharSequence("|k:", UTF_8);
-            b.writeCharSequence(aggregationKey, UTF_8);
-        }
-
-        Event.Priority priority = event.getPriority();
-        if (priority != null) {
-            b.writeCharSequence("|p:", UTF_8);
-            b.writeCharSequence(priority.name().toLowerCase(), UTF_8);
+    static int partition(MetricSlot slot, int partitions) {
+        CompiledMetric metric = slot.metric();
+        int hash = 0;
+        if (metric != null) {
+            // head of compiled metric is the same as the beginning of its line
+            for (byte ch : metric.head()) {
+                if (ch == ':')
+                    break;
+
+                hash = 31 * hash + ch;
+            }
+        } else {
+            ByteBuf buf = slot.buf();
+            for (int i = buf.readerIndex(); i < buf.writerIndex(); i++) {
+                byte ch = buf.getByte(i);
+                if (ch == ':' || ch == '|')
+                    break;
+
+                hash = 31 * hash + ch;
+            }
         }
 
-        String source = event.getSourceType();
-        if (source != null) {
-            b.writeCharSequence("|s:", UTF_8);
-            b.writeCharSequence(source, UTF_8);
-        }
+        return (hash & Integer.MAX_VALUE) % partitions;
+    }
 
-        Event.AlertType alert = event.getAlertType();
-        if (alert != null) {
-            b.writeCharSequence("|t:", UTF_8);
-            b.writeCharSequence(alert.name().toLowerCase(), UTF_8);
-        }
 
-        writeTags(b, global, event.tags());
+    @Override
+    protected RingBuffer<MetricSlot> ring() {
+        return buffer;
     }
 
+    @Override
+    protected long getQueueDepth() {
+        return buffer.getBufferSize() - buffer.remainingCapacity();
+    }
 
-    /**
-     * @param check service check
-     */
     @Override
-    public void serviceCheck(ServiceCheck check) {
-        buffer.publishEvent((b, seq) -> writeServiceCheck(b, check));
+    protected long getQueueCapacity() {
+        return buffer.getBufferSize();
     }
 
     /**
-     * _sc|name|status|d:timestamp|h:hostname|#tag1,tag2|m:service_check_message
-     *
-     * @param b buffer
-     * @param check service check to write
+     * Waits for consumers by sequences of the ring buffer, {@link Disruptor#shutdown(long, TimeUnit)}
+     * doesn't wait for consumer threads which aren't started yet
      */
-    private void writeServiceCheck(ByteBuf b, ServiceCheck check) {
-        b.clear();
-        b.writeCharSequence("_sc", UTF_8);
-        b.writeByte('|');
-        b.writeCharSequence(check.getName(), UTF_8);
-        b.writeByte('|');
-        BufferFormatter.append(b, check.getStatus().ordinal());
-
-        if (check.getTime() > 0) {
-            b.writeCharSequence("|d:", UTF_8);
-            BufferFormatter.append(b, check.getTime() / 1000);
-        }
-
-        String hostname = check.getHostname();
-        if (hostname != null) {
-            b.writeCharSequence("|h:", UTF_8);
-            b.writeCharSequence(hostname, UTF_8);
-        }
+    @Override
+    protected void drain(long deadline) {
+        while (getQueueDepth() > 0 && System.nanoTime() - deadline < 0)
+            LockSupport.parkNanos(DRAIN_PARK_NANOS);
 
-        writeTags(b, global, check.tags());
+        disruptor.halt();
+        reportUndrained();
 
-        String message = check.getMessage();
-        if (message != null) {
-            b.writeCharSequence("|m:", UTF_8);
-            b.writeCharSequence(message, UTF_8);
-        }
+        for (PacketSender sender : senders)
+            closeSafely(sender);
     }
 }
-
-
@@ -0,0 +1,74 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.MetricType;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Counters of metrics, events and service checks dropped by {@link OverflowPolicy}
+ */
+public class DroppedMetrics {
+
+    private final LongAdder[] metrics = new LongAdder[MetricType.values().length];
+    private final LongAdder events = new LongAdder();
+    private final LongAdder serviceChecks = new LongAdder();
+
+    public DroppedMetrics() {
+        for (int i = 0; i < metrics.length; i++)
+            metrics[i] = new LongAdder();
+    }
+
+
+    void metric(MetricType type) {
+        metrics[type.ordinal()].increment();
+    }
+
+    void event() {
+        events.increment();
+    }
+
+    void serviceCheck() {
+        serviceChecks.increment();
+    }
+
+
+    /**
+     * @param type metric type
+     * @return number of dropped metrics of type
+     */
+    public long getMetrics(MetricType type) {
+        return metrics[type.ordinal()].sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    public long getServiceChecks() {
+        return serviceChecks.sum();
+    }
+
+    /**
+     * @return number of all dropped metrics, events and service checks
+     */
+    public long getTotal() {
+        long total = events.sum() + serviceChecks.sum();
+        for (LongAdder metric : metrics)
+            total += metric.sum();
+
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DroppedMetrics{");
+        for (MetricType type : MetricType.values())
+            sb.append(type.name().toLowerCase()).append('=').append(getMetrics(type)).append(", ");
+
+        return sb.append("event=").append(getEvents())
+                .append(", service_check=").append(getServiceChecks())
+                .append('}')
+                .toString();
+    }
+}
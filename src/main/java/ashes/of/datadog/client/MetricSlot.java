@@ -0,0 +1,162 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.utils.BufferFormatter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * Slot of ring buffer with encoded line.
+ *
+ * If gathering writes are used, slot of compiled metric with constant tags contains only encoded value,
+ * head and tail of the line are shared segments of compiled metric.
+ *
+ * If formatting is deferred, slot of such metric contains a record of the metric and raw value,
+ * which is formatted by consumer thread into its own buffer.
+ *
+ * Buffer of slot is allocated on the first line or value written into the slot, so slots which carry only
+ * deferred records take tens of bytes. Slot keeps its buffer once allocated, so ring memory shrinks
+ * only if almost all metrics are deferred records
+ */
+public class MetricSlot {
+
+    private final boolean directMemoryUsed;
+
+    /**
+     * Nominal capacity of buffer, buffer grown by a long line is shrunk to it on reuse
+     */
+    private final int capacity;
+
+    /**
+     * Buffer for line or value, null until the first line or value is written
+     */
+    @Nullable
+    private ByteBuf buf;
+
+    /**
+     * Compiled metric if slot contains only value, null if slot contains whole line
+     */
+    @Nullable
+    private CompiledMetric metric;
+
+    /**
+     * True if value of record isn't formatted yet
+     */
+    private boolean deferred;
+
+    /**
+     * True if value of record is raw bits of double
+     */
+    private boolean floating;
+
+    /**
+     * Value of record, long or raw bits of double
+     */
+    private long bits;
+
+    /**
+     * @param directMemoryUsed allocate buffer in direct memory
+     * @param capacity nominal capacity of buffer
+     */
+    MetricSlot(boolean directMemoryUsed, int capacity) {
+        this.directMemoryUsed = directMemoryUsed;
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * @return cleared buffer for whole line
+     */
+    ByteBuf line() {
+        this.metric = null;
+        this.deferred = false;
+        return clear();
+    }
+
+    /**
+     * @param metric compiled metric with constant tags
+     * @return cleared buffer for value of metric
+     */
+    ByteBuf value(CompiledMetric metric) {
+        this.metric = metric;
+        this.deferred = false;
+        return clear();
+    }
+
+    /**
+     * @param metric compiled metric with constant tags
+     * @param value value to format on consumer thread
+     */
+    void record(CompiledMetric metric, long value) {
+        this.metric = metric;
+        this.deferred = true;
+        this.floating = false;
+        this.bits = value;
+    }
+
+    /**
+     * @param metric compiled metric with constant tags
+     * @param value value to format on consumer thread
+     */
+    void record(CompiledMetric metric, double value) {
+        this.metric = metric;
+        this.deferred = true;
+        this.floating = true;
+        this.bits = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Slot is owned by producer here, so buffer is shrunk by producer instead of consumer
+     */
+    private ByteBuf clear() {
+        ByteBuf buf = this.buf;
+        if (buf == null) {
+            buf = directMemoryUsed ? Unpooled.directBuffer(capacity) : Unpooled.buffer(capacity);
+            this.buf = buf;
+        }
+
+        buf.clear();
+        if (buf.capacity() > capacity)
+            buf.capacity(capacity);
+
+        return buf;
+    }
+
+    /**
+     * @return buffer with line or value, null if slot contains deferred record
+     */
+    @Nullable
+    ByteBuf buf() {
+        return deferred ? null : buf;
+    }
+
+    /**
+     * Formats value of deferred record the same way as {@link MetricWriter#writeValue}, invoked by consumer thread
+     *
+     * @param scratch buffer of consumer thread for value of deferred record
+     * @return buffer with line or value
+     */
+    ByteBuf encode(ByteBuf scratch) {
+        if (!deferred)
+            return buf;
+
+        scratch.clear();
+        if (floating) {
+            BufferFormatter.append(scratch, Double.longBitsToDouble(bits), 6, false);
+        } else {
+            BufferFormatter.append(scratch, bits);
+        }
+
+        return scratch;
+    }
+
+    /**
+     * @return compiled metric if slot contains only value
+     */
+    @Nullable
+    CompiledMetric metric() {
+        return metric;
+    }
+}
@@ -0,0 +1,336 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.Event;
+import ashes.of.datadog.client.metrics.MetricType;
+import ashes.of.datadog.client.metrics.ServiceCheck;
+import ashes.of.datadog.client.utils.BufferFormatter;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * Writes metrics, events and service checks in DogStatsD format.
+ *
+ * All methods append a line to the buffer from its writer index, so buffer should be cleared before if needed
+ */
+public class MetricWriter {
+
+    @Nullable
+    private final String prefix;
+    private final TagSet global;
+
+    /**
+     * Max size of event or service check line, text or message is truncated to fit
+     */
+    private final int maxEventSize;
+
+    /**
+     * @param prefix prefix for all metrics
+     * @param global global tags
+     */
+    public MetricWriter(@Nullable String prefix, TagSet global) {
+        this(prefix, global, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param prefix prefix for all metrics
+     * @param global global tags
+     * @param maxEventSize max size of event or service check line in bytes
+     */
+    public MetricWriter(@Nullable String prefix, TagSet global, int maxEventSize) {
+        this.prefix = prefix;
+        this.global = global;
+        this.maxEventSize = maxEventSize;
+    }
+
+
+    /**
+     * metric.name:value|type|@sample_rate|#tag1:value,tag2
+     */
+    public void write(ByteBuf b, String metric, long value, MetricType type, double sampleRate, Tags tags) {
+        writeMetricName(b, metric);
+        BufferFormatter.append(b, value);
+        writeMetricType(b, type, sampleRate, tags);
+    }
+
+    /**
+     * metric.name:value|type|@sample_rate|#tag1:value,tag2
+     */
+    public void write(ByteBuf b, String metric, double value, MetricType type, double sampleRate, Tags tags) {
+        writeMetricName(b, metric);
+        BufferFormatter.append(b, value, 6, false);
+        writeMetricType(b, type, sampleRate, tags);
+    }
+
+    /**
+     * metric.name:value|type|@sample_rate|#tag1:value,tag2
+     */
+    public void write(ByteBuf b, String metric, String value, MetricType type, double sampleRate, Tags tags) {
+        writeMetricName(b, metric);
+        BufferFormatter.append(b, value);
+        writeMetricType(b, type, sampleRate, tags);
+    }
+
+    /**
+     * Writes head of metric: metric.name:
+     */
+    private void writeMetricName(ByteBuf b, String metric) {
+        if (prefix != null) {
+            b.writeCharSequence(prefix, UTF_8);
+            b.writeByte('.');
+        }
+        b.writeCharSequence(metric, UTF_8);
+        b.writeByte(':');
+    }
+
+    /**
+     * Writes tail of metric: |type|@sample_rate|#tag1:value,tag2
+     */
+    private void writeMetricType(ByteBuf b, MetricType type, double sampleRate, Tags tags) {
+        b.writeByte('|');
+        b.writeByte(type.getType());
+
+        if (sampleRate < 1)
+            writeSampleRate(b, sampleRate);
+
+        TagSet.write(b, global, tags.compile());
+    }
+
+
+    /**
+     * Writes |@sample_rate in the shortest form which is parsed back to the same double, without exponent.
+     * Aggregated distributions send buckets with rate 1/count, so truncated rate would change the count
+     * rebuilt by agent, e.g. 1/300000 with 6 fraction digits is 0.000003
+     */
+    private void writeSampleRate(ByteBuf b, double sampleRate) {
+        b.writeByte('|');
+        b.writeByte('@');
+        BufferFormatter.append(b, BigDecimal.valueOf(sampleRate).stripTrailingZeros().toPlainString());
+    }
+
+
+    /**
+     * Encodes line template: prefix.name: as head and |type|@sample_rate|#global_tags,tags as tail,
+     * tags are encoded only if all of them are constant
+     */
+    public CompiledMetric compile(String metric, MetricType type, double sampleRate, Tags tags) {
+        TagSet tagSet = tags.compile();
+        boolean constant = global.isConstant() && tagSet.isConstant();
+
+        ByteBuf b = Unpooled.buffer();
+        writeMetricName(b, metric);
+
+        byte[] head = ByteBufUtil.getBytes(b);
+
+        b.clear();
+        b.writeByte('|');
+        b.writeByte(type.getType());
+        if (sampleRate < 1)
+            writeSampleRate(b, sampleRate);
+
+        if (constant)
+            TagSet.write(b, global, tagSet);
+
+        byte[] tail = ByteBufUtil.getBytes(b);
+
+        return new CompiledMetric(metric, type, sampleRate, tags, head, tail, constant);
+    }
+
+    /**
+     * Writes compiled metric, metric should be compiled by {@link #compile(String, MetricType, double, Tags)}
+     */
+    public void write(ByteBuf b, CompiledMetric metric, long value) {
+        b.writeBytes(metric.head());
+        BufferFormatter.append(b, value);
+        writeMetricTail(b, metric);
+    }
+
+    /**
+     * Writes compiled metric, metric should be compiled by {@link #compile(String, MetricType, double, Tags)}
+     */
+    public void write(ByteBuf b, CompiledMetric metric, double value) {
+        b.writeBytes(metric.head());
+        BufferFormatter.append(b, value, 6, false);
+        writeMetricTail(b, metric);
+    }
+
+    /**
+     * Writes compiled metric, metric should be compiled by {@link #compile(String, MetricType, double, Tags)}
+     */
+    public void write(ByteBuf b, CompiledMetric metric, String value) {
+        b.writeBytes(metric.head());
+        BufferFormatter.append(b, value);
+        writeMetricTail(b, metric);
+    }
+
+    /**
+     * Writes only value of compiled metric, head and tail are sent from shared segments of metric
+     */
+    public void writeValue(ByteBuf b, long value) {
+        BufferFormatter.append(b, value);
+    }
+
+    /**
+     * Writes only value of compiled metric, head and tail are sent from shared segments of metric
+     */
+    public void writeValue(ByteBuf b, double value) {
+        BufferFormatter.append(b, value, 6, false);
+    }
+
+    /**
+     * Writes only value of compiled metric, head and tail are sent from shared segments of metric
+     */
+    public void writeValue(ByteBuf b, String value) {
+        BufferFormatter.append(b, value);
+    }
+
+    private void writeMetricTail(ByteBuf b, CompiledMetric metric) {
+        b.writeBytes(metric.tail());
+        if (!metric.isConstant())
+            TagSet.write(b, global, metric.getTagSet());
+    }
+
+
+    /**
+     * _e{title.length,text.length}:title|text|d:date_happened|h:hostname|p:priority|t:alert_type|#tag1,tag2
+     *
+     * Lengths are in UTF-8 bytes, text is truncated if line exceeds max event size
+     *
+     * @param b buffer
+     * @param event event to write
+     */
+    public void writeEvent(ByteBuf b, Event event) {
+        int start = b.writerIndex();
+        String text = event.getText();
+        writeEvent(b, event, text);
+
+        int excess = b.writerIndex() - start - maxEventSize;
+        if (excess > 0) {
+            b.writerIndex(start);
+            writeEvent(b, event, truncate(text, ByteBufUtil.utf8Bytes(text) - excess));
+        }
+    }
+
+    private void writeEvent(ByteBuf b, Event event, String text) {
+        String title = event.getTitle();
+
+        b.writeCharSequence("_e{", UTF_8);
+        BufferFormatter.append(b, ByteBufUtil.utf8Bytes(title));
+        b.writeByte(',');
+        BufferFormatter.append(b, ByteBufUtil.utf8Bytes(text));
+        b.writeByte('}');
+        b.writeByte(':');
+        b.writeCharSequence(title, UTF_8);
+        b.writeByte('|');
+        b.writeCharSequence(text, UTF_8);
+
+        if (event.getTime() > 0) {
+            b.writeCharSequence("|d:", UTF_8);
+            BufferFormatter.append(b, event.getTime() / 1000);
+        }
+
+        String hostname = event.getHostname();
+        if (hostname != null) {
+            b.writeCharSequence("|h:", UTF_8);
+            b.writeCharSequence(hostname, UTF_8);
+        }
+
+        String aggregationKey = event.getAggregationKey();
+        if (aggregationKey != null) {
+            b.writeCharSequence("|k:", UTF_8);
+            b.writeCharSequence(aggregationKey, UTF_8);
+        }
+
+        Event.Priority priority = event.getPriority();
+        if (priority != null) {
+            b.writeCharSequence("|p:", UTF_8);
+            b.writeCharSequence(priority.name().toLowerCase(), UTF_8);
+        }
+
+        String source = event.getSourceType();
+        if (source != null) {
+            b.writeCharSequence("|s:", UTF_8);
+            b.writeCharSequence(source, UTF_8);
+        }
+
+        Event.AlertType alert = event.getAlertType();
+        if (alert != null) {
+            b.writeCharSequence("|t:", UTF_8);
+            b.writeCharSequence(alert.name().toLowerCase(), UTF_8);
+        }
+
+        TagSet.write(b, global, event.tags().compile());
+    }
+
+
+    /**
+     * _sc|name|status|d:timestamp|h:hostname|#tag1,tag2|m:service_check_message
+     *
+     * Message is truncated if line exceeds max event size
+     *
+     * @param b buffer
+     * @param check service check to write
+     */
+    public void writeServiceCheck(ByteBuf b, ServiceCheck check) {
+        int start = b.writerIndex();
+        String message = check.getMessage();
+        writeServiceCheck(b, check, message);
+
+        int excess = b.writerIndex() - start - maxEventSize;
+        if (excess > 0 && message != null) {
+            b.writerIndex(start);
+            writeServiceCheck(b, check, truncate(message, ByteBufUtil.utf8Bytes(message) - excess));
+        }
+    }
+
+    private void writeServiceCheck(ByteBuf b, ServiceCheck check, @Nullable String message) {
+        b.writeCharSequence("_sc", UTF_8);
+        b.writeByte('|');
+        b.writeCharSequence(check.getName(), UTF_8);
+        b.writeByte('|');
+        BufferFormatter.append(b, check.getStatus().ordinal());
+
+        if (check.getTime() > 0) {
+            b.writeCharSequence("|d:", UTF_8);
+            BufferFormatter.append(b, check.getTime() / 1000);
+        }
+
+        String hostname = check.getHostname();
+        if (hostname != null) {
+            b.writeCharSequence("|h:", UTF_8);
+            b.writeCharSequence(hostname, UTF_8);
+        }
+
+        TagSet.write(b, global, check.tags().compile());
+
+        if (message != null) {
+            b.writeCharSequence("|m:", UTF_8);
+            b.writeCharSequence(message, UTF_8);
+        }
+    }
+
+    /**
+     * @param s string
+     * @param maxBytes max length in UTF-8 bytes
+     * @return longest prefix of string which doesn't exceed max length and doesn't split code points
+     */
+    static String truncate(String s, int maxBytes) {
+        int bytes = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            bytes += cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            if (bytes > maxBytes)
+                return s.substring(0, i);
+
+            i += Character.charCount(cp);
+        }
+
+        return s;
+    }
+}
@@ -0,0 +1,24 @@
+package ashes.of.datadog.client;
+
+
+/**
+ * Periodically passed to error handler if any metrics were dropped since the last report
+ */
+public class MetricsDroppedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long dropped;
+
+    public MetricsDroppedException(long dropped, DroppedMetrics total) {
+        super(String.format("Dropped %d metrics since the last report, total: %s", dropped, total), null, false, false);
+        this.dropped = dropped;
+    }
+
+    /**
+     * @return number of metrics, events and service checks dropped since the last report
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
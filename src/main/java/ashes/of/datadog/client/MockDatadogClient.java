@@ -21,11 +21,14 @@ public class MockDatadogClient extends AbstractDatadogClient {
     }
 
     @Override
-    public void stop() {}
+    protected void drain(long deadline) {}
 
     @Override
     protected void send(String metric, String value, MetricType type, Tags tags) {}
 
+    @Override
+    protected void send(String metric, String value, MetricType type, double sampleRate, Tags tags) {}
+
     @Override
     public void event(Event event) {}
 
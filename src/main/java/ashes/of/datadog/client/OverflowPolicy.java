@@ -0,0 +1,25 @@
+package ashes.of.datadog.client;
+
+
+/**
+ * What client does with a metric when its queue is full
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Waits for free space, caller is blocked while consumer is slow or stuck
+     */
+    BLOCK,
+
+    /**
+     * Drops the metric which doesn't fit into the queue, caller is never blocked
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drops metrics by priority of their type, caller is never blocked.
+     * Histograms, distributions and sets are dropped when queue is half full,
+     * gauges when queue is three quarters full, counters, events and service checks only when queue is full
+     */
+    DROP_BY_PRIORITY
+}
@@ -0,0 +1,268 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.transport.Transport;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Sends encoded lines through the transport, used only by consumer thread except probes.
+ *
+ * If packing is used, lines are joined with newlines into one packet up to max packet size,
+ * packet is sent at the end of the batch or when the next line doesn't fit
+ */
+public class PacketSender implements Closeable {
+
+    private final Transport transport;
+    private final ClientTelemetry telemetry;
+
+    /**
+     * Health of the agent, null if sending isn't suspended when agent is down
+     */
+    @Nullable
+    private final AgentHealth health;
+
+    /**
+     * Reused arrays of buffers to send, so varargs don't allocate
+     */
+    private final ByteBuffer[] single = new ByteBuffer[1];
+    private final ByteBuffer[] gather = new ByteBuffer[3];
+
+    /**
+     * Packet for joined metrics, null if packing isn't used
+     */
+    @Nullable
+    private final ByteBuf packet;
+    private final int maxPacketSize;
+
+    /**
+     * Buffer for values of deferred records, slots of such records have no buffer
+     */
+    private final ByteBuf scratch;
+
+    /**
+     * Packets accepted by transport since the last flush, they are lost if flush fails
+     */
+    private int unflushed;
+
+    /**
+     * @param transport transport to send packets
+     * @param packing join lines into one packet
+     * @param maxPacketSize max payload size of joined packet
+     * @param directMemoryUsed use direct memory for joined packet
+     * @param telemetry telemetry for sent packets and errors
+     */
+    public PacketSender(Transport transport, boolean packing, int maxPacketSize, boolean directMemoryUsed, ClientTelemetry telemetry) {
+        this(transport, packing, maxPacketSize, directMemoryUsed, telemetry, null);
+    }
+
+    /**
+     * @param transport transport to send packets
+     * @param packing join lines into one packet
+     * @param maxPacketSize max payload size of joined packet
+     * @param directMemoryUsed use direct memory for joined packet
+     * @param telemetry telemetry for sent packets and errors
+     * @param health health of the agent, null if sending isn't suspended when agent is down
+     */
+    public PacketSender(Transport transport, boolean packing, int maxPacketSize, boolean directMemoryUsed,
+                        ClientTelemetry telemetry, @Nullable AgentHealth health) {
+        this.transport = transport;
+        this.telemetry = telemetry;
+        this.health = health;
+        if (health != null)
+            health.register(this);
+
+        this.maxPacketSize = maxPacketSize;
+        this.scratch = directMemoryUsed ? Unpooled.directBuffer(64) : Unpooled.buffer(64);
+        this.packet = !packing ? null :
+                directMemoryUsed ?
+                        Unpooled.directBuffer(maxPacketSize) :
+                        Unpooled.buffer(maxPacketSize);
+    }
+
+    /**
+     * @param b builder
+     * @param telemetry telemetry for sent packets and errors
+     * @param health health of the agent, null if sending isn't suspended when agent is down
+     */
+    public PacketSender(DatadogBuilder b, ClientTelemetry telemetry, @Nullable AgentHealth health) {
+        this(b.newTransport(), b.isPackingUsed(), b.getMaxPacketSize(), b.isDirectMemoryUsed(), telemetry, health);
+    }
+
+
+    /**
+     * Sends readable bytes of buffer as one line
+     *
+     * @param buf buffer with line
+     * @param endOfBatch true if there are no more lines available now
+     */
+    public void send(ByteBuf buf, boolean endOfBatch) {
+        send(buf, buf.readerIndex(), buf.readableBytes(), endOfBatch);
+    }
+
+    /**
+     * Sends bytes of buffer as one line
+     *
+     * @param buf buffer with line
+     * @param index index of the first byte of line
+     * @param length length of line
+     * @param endOfBatch true if there are no more lines available now
+     */
+    public void send(ByteBuf buf, int index, int length, boolean endOfBatch) {
+        if (append(length)) {
+            packet.writeBytes(buf, index, length);
+        } else {
+            write(buf, index, length);
+        }
+
+        if (endOfBatch)
+            flush();
+    }
+
+    /**
+     * Sends line of the slot, if slot contains only value, the line is gathered from head and tail segments
+     * of compiled metric and the value. Value of deferred record is formatted here
+     *
+     * @param slot slot with line or value
+     * @param endOfBatch true if there are no more lines available now
+     */
+    public void send(MetricSlot slot, boolean endOfBatch) {
+        CompiledMetric metric = slot.metric();
+        if (metric == null) {
+            send(slot.buf(), endOfBatch);
+            return;
+        }
+
+        ByteBuf value = slot.encode(scratch);
+        int length = metric.head().length + value.readableBytes() + metric.tail().length;
+        if (append(length)) {
+            packet.writeBytes(metric.head());
+            packet.writeBytes(value, value.readerIndex(), value.readableBytes());
+            packet.writeBytes(metric.tail());
+        } else {
+            gather[0] = metric.headSegment();
+            gather[1] = value.internalNioBuffer(value.readerIndex(), value.readableBytes());
+            gather[2] = metric.tailSegment();
+            write(gather, length);
+        }
+
+        if (endOfBatch)
+            flush();
+    }
+
+    /**
+     * Sends joined lines if the next line doesn't fit into packet and adds separator
+     *
+     * @param length length of the next line
+     * @return true if line should be appended to packet, false if it should be sent as is
+     */
+    private boolean append(int length) {
+        if (packet == null)
+            return false;
+
+        if (packet.isReadable() && packet.readableBytes() + 1 + length > maxPacketSize)
+            sendPacket(packet);
+
+        // metric doesn't fit into packet, so it goes as is
+        if (length >= maxPacketSize)
+            return false;
+
+        if (packet.isReadable())
+            packet.writeByte('\n');
+
+        return true;
+    }
+
+    /**
+     * Sends joined lines if there are any and flushes the transport
+     */
+    public void flush() {
+        if (packet != null && packet.isReadable())
+            sendPacket(packet);
+
+        flushTransport();
+    }
+
+    /**
+     * Closes the transport, joined lines should be flushed before
+     */
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+
+    private void sendPacket(ByteBuf packet) {
+        try {
+            write(packet, packet.readerIndex(), packet.readableBytes());
+        } finally {
+            packet.clear();
+        }
+    }
+
+    /**
+     * Probes the transport, used by scheduler thread while sending is suspended
+     *
+     * @return true if receiver is reachable
+     */
+    boolean probe() {
+        try {
+            transport.probe();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Flushes the transport, if flush fails, packets buffered by transport are counted as dropped
+     */
+    private void flushTransport() {
+        try {
+            transport.flush();
+        } catch (IOException e) {
+            telemetry.error(e);
+            telemetry.packetsDropped(unflushed);
+        } finally {
+            unflushed = 0;
+        }
+    }
+
+    private void write(ByteBuf buf, int index, int length) {
+        single[0] = buf.internalNioBuffer(index, length);
+        write(single, length);
+    }
+
+    /**
+     * Sends packet, if it isn't sent because socket buffer is full or because of error, the packet is counted as dropped,
+     * dropped packets are reported to error handler once per flush interval
+     */
+    private void write(ByteBuffer[] parts, int length) {
+        long sent;
+        try {
+            sent = transport.send(parts);
+        } catch (IOException e) {
+            telemetry.error(e);
+            telemetry.packetDropped();
+            if (health != null)
+                health.failure(e);
+
+            return;
+        } finally {
+            Arrays.fill(parts, null);
+        }
+
+        if (sent != length) {
+            telemetry.packetDropped();
+            return;
+        }
+
+        telemetry.packet((int) sent);
+        unflushed++;
+    }
+}
@@ -0,0 +1,36 @@
+package ashes.of.datadog.client;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * Periodically passed to error handler if any packets weren't sent since the last report,
+ * because socket buffer was full or because of write errors, the last error is the cause
+ */
+public class PacketsDroppedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long dropped;
+    private final long errors;
+
+    public PacketsDroppedException(long dropped, long errors, @Nullable Throwable lastError) {
+        super(String.format("Dropped %d packets since the last report, write errors: %d", dropped, errors), lastError, false, false);
+        this.dropped = dropped;
+        this.errors = errors;
+    }
+
+    /**
+     * @return number of packets dropped since the last report
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return number of write errors since the last report
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
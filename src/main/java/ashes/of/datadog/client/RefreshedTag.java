@@ -0,0 +1,126 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.utils.DefaultThreadFactory;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * Tag with value which is evaluated periodically on shared scheduler thread.
+ *
+ * Encoded value is published via volatile field, so send only copies cached bytes.
+ * If supplier throws an exception, the previous value is kept and the exception is passed to error handler.
+ * Refresh stops when tag becomes unreachable, when owner of the tag is stopped or when the tag is cancelled
+ */
+class RefreshedTag implements Supplier<String> {
+
+    private static class RefresherHolder {
+        private static final ScheduledExecutorService REFRESHER =
+                Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("datadog-tag-refresher-%d", true));
+    }
+
+    /**
+     * Holds tag weakly, so scheduled task doesn't prevent tag from being collected
+     */
+    private static class RefreshTask implements Runnable {
+        private final WeakReference<RefreshedTag> ref;
+        private volatile ScheduledFuture<?> future;
+
+        private RefreshTask(RefreshedTag tag) {
+            this.ref = new WeakReference<>(tag);
+        }
+
+        @Override
+        public void run() {
+            RefreshedTag tag = ref.get();
+            if (tag == null || tag.stopped.getAsBoolean()) {
+                future.cancel(false);
+                return;
+            }
+
+            tag.refresh();
+        }
+    }
+
+
+    private final String tag;
+    private final Supplier<Object> sup;
+    private final Consumer<Throwable> errorHandler;
+
+    /**
+     * Checked before each refresh, e.g. client which owns the tag is stopped
+     */
+    private final BooleanSupplier stopped;
+    private final RefreshTask task;
+
+    private volatile String value;
+    private volatile byte[] bytes;
+
+    RefreshedTag(String tag, Supplier<Object> sup, Duration interval, Consumer<Throwable> errorHandler, BooleanSupplier stopped) {
+        if (interval.isNegative() || interval.isZero())
+            throw new IllegalArgumentException("Refresh interval should be positive: " + interval);
+
+        this.tag = tag;
+        this.sup = sup;
+        this.errorHandler = errorHandler;
+        this.stopped = stopped;
+        this.value = tag;
+        this.bytes = tag.getBytes(UTF_8);
+
+        refresh();
+
+        long nanos = interval.toNanos();
+        this.task = new RefreshTask(this);
+        task.future = RefresherHolder.REFRESHER.scheduleAtFixedRate(task, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops periodic refresh, the last value is kept
+     */
+    void cancel() {
+        task.future.cancel(false);
+    }
+
+    private void refresh() {
+        try {
+            Object o = sup.get();
+            String value = o == null ? tag : tag + ':' + o;
+
+            this.bytes = value.getBytes(UTF_8);
+            this.value = value;
+        } catch (Throwable th) {
+            // keep the previous value, exception would cancel periodic refresh
+            handleError(th);
+        }
+    }
+
+    private void handleError(Throwable th) {
+        try {
+            errorHandler.accept(th);
+        } catch (Throwable ignore) {
+            // error handler shouldn't stop refresh either
+        }
+    }
+
+    /**
+     * @return encoded value of tag
+     */
+    byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public String get() {
+        return value;
+    }
+}
@@ -0,0 +1,283 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.Event;
+import ashes.of.datadog.client.metrics.MetricType;
+import ashes.of.datadog.client.metrics.ServiceCheck;
+import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Base client for disruptor ring buffers of preallocated byte buffers, metrics are encoded directly into claimed slots
+ */
+public abstract class RingBufferDatadogClient extends AbstractDatadogClient {
+
+    /**
+     * Park time of producer waiting for free slot, the same as multi producer sequencer parks
+     */
+    private static final long BLOCK_PARK_NANOS = 1;
+
+    /**
+     * Slots of compiled metrics with constant tags contain only values
+     */
+    protected final boolean gatheringWritesUsed;
+
+    /**
+     * Slots of compiled metrics contain raw values, which are formatted by consumer
+     */
+    protected final boolean deferredFormattingUsed;
+
+    public RingBufferDatadogClient(DatadogBuilder b) {
+        super(b);
+        this.gatheringWritesUsed = b.isGatheringWritesUsed();
+        this.deferredFormattingUsed = b.isDeferredFormattingUsed();
+    }
+
+    protected static EventFactory<MetricSlot> newEventFactory(boolean directMemoryUsed, int bufferSize) {
+        return () -> new MetricSlot(directMemoryUsed, bufferSize);
+    }
+
+    /**
+     * @return ring buffer for metrics of current thread
+     */
+    protected abstract RingBuffer<MetricSlot> ring();
+
+    /**
+     * @return ring buffer for events and service checks of current thread, the same as for metrics by default
+     */
+    protected RingBuffer<MetricSlot> eventRing() {
+        return ring();
+    }
+
+
+    /**
+     * Claims next slot for metric according to overflow policy
+     *
+     * @return sequence of slot or -1 if metric is dropped
+     */
+    private long claim(RingBuffer<MetricSlot> ring, MetricType type) {
+        if (overflowPolicy == OverflowPolicy.DROP_BY_PRIORITY) {
+            int size = ring.getBufferSize();
+            if (isDroppedByPriority(type, size - ring.remainingCapacity(), size)) {
+                dropped.metric(type);
+                return -1;
+            }
+        }
+
+        long seq = claim(ring);
+        if (seq < 0) {
+            dropped.metric(type);
+            return -1;
+        }
+
+        telemetry.metric();
+        return seq;
+    }
+
+    /**
+     * Claims next slot, waits for free slot only if overflow policy is {@link OverflowPolicy#BLOCK}
+     * and until the client is stopped
+     *
+     * @return sequence of slot or -1 if buffer is full, the client is stopped or sending is suspended
+     */
+    private long claim(RingBuffer<MetricSlot> ring) {
+        if (isClosed() || isSuspended())
+            return -1;
+
+        while (true) {
+            try {
+                return ring.tryNext();
+            } catch (InsufficientCapacityException e) {
+                // consumer is halted on stop, so waiting producer gives up instead of waiting forever
+                if (overflowPolicy != OverflowPolicy.BLOCK || isClosed())
+                    return -1;
+
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+    }
+
+
+    @Override
+    protected void send(String metric, long value, MetricType type, Tags tags) {
+        send(metric, value, type, 1, tags);
+    }
+
+    @Override
+    protected void send(String metric, long value, MetricType type, double sampleRate, Tags tags) {
+        RingBuffer<MetricSlot> ring = ring();
+        long seq = claim(ring, type);
+        if (seq < 0)
+            return;
+
+        try {
+            ByteBuf b = ring.get(seq).line();
+            writer.write(b, metric, value, type, sampleRate, tags);
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+    @Override
+    protected void send(String metric, double value, MetricType type, Tags tags) {
+        send(metric, value, type, 1, tags);
+    }
+
+    @Override
+    protected void send(String metric, double value, MetricType type, double sampleRate, Tags tags) {
+        RingBuffer<MetricSlot> ring = ring();
+        long seq = claim(ring, type);
+        if (seq < 0)
+            return;
+
+        try {
+            ByteBuf b = ring.get(seq).line();
+            writer.write(b, metric, value, type, sampleRate, tags);
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+    @Override
+    protected void send(String metric, String value, MetricType type, Tags tags) {
+        send(metric, value, type, 1, tags);
+    }
+
+    @Override
+    protected void send(String metric, String value, MetricType type, double sampleRate, Tags tags) {
+        RingBuffer<MetricSlot> ring = ring();
+        long seq = claim(ring, type);
+        if (seq < 0)
+            return;
+
+        try {
+            ByteBuf b = ring.get(seq).line();
+            writer.write(b, metric, value, type, sampleRate, tags);
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+    @Override
+    protected void send(CompiledMetric metric, long value) {
+        if (!metric.isEncoded()) {
+            super.send(metric, value);
+            return;
+        }
+
+        RingBuffer<MetricSlot> ring = ring();
+        long seq = claim(ring, metric.getType());
+        if (seq < 0)
+            return;
+
+        try {
+            MetricSlot slot = ring.get(seq);
+            if (deferredFormattingUsed && metric.isConstant()) {
+                slot.record(metric, value);
+            } else if (gatheringWritesUsed && metric.isConstant()) {
+                writer.writeValue(slot.value(metric), value);
+            } else {
+                writer.write(slot.line(), metric, value);
+            }
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+    @Override
+    protected void send(CompiledMetric metric, double value) {
+        if (!metric.isEncoded()) {
+            super.send(metric, value);
+            return;
+        }
+
+        RingBuffer<MetricSlot> ring = ring();
+        long seq = claim(ring, metric.getType());
+        if (seq < 0)
+            return;
+
+        try {
+            MetricSlot slot = ring.get(seq);
+            if (deferredFormattingUsed && metric.isConstant()) {
+                slot.record(metric, value);
+            } else if (gatheringWritesUsed && metric.isConstant()) {
+                writer.writeValue(slot.value(metric), value);
+            } else {
+                writer.write(slot.line(), metric, value);
+            }
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+    @Override
+    protected void send(CompiledMetric metric, String value) {
+        if (!metric.isEncoded()) {
+            super.send(metric, value);
+            return;
+        }
+
+        RingBuffer<MetricSlot> ring = ring();
+        long seq = claim(ring, metric.getType());
+        if (seq < 0)
+            return;
+
+        try {
+            MetricSlot slot = ring.get(seq);
+            if (gatheringWritesUsed && metric.isConstant()) {
+                writer.writeValue(slot.value(metric), value);
+            } else {
+                writer.write(slot.line(), metric, value);
+            }
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+
+    /**
+     * @param event event
+     */
+    @Override
+    public void event(Event event) {
+        RingBuffer<MetricSlot> ring = eventRing();
+        long seq = claim(ring);
+        if (seq < 0) {
+            dropped.event();
+            return;
+        }
+
+        telemetry.event();
+        try {
+            ByteBuf b = ring.get(seq).line();
+            writer.writeEvent(b, event);
+        } finally {
+            ring.publish(seq);
+        }
+    }
+
+    /**
+     * @param check service check
+     */
+    @Override
+    public void serviceCheck(ServiceCheck check) {
+        RingBuffer<MetricSlot> ring = eventRing();
+        long seq = claim(ring);
+        if (seq < 0) {
+            dropped.serviceCheck();
+            return;
+        }
+
+        telemetry.serviceCheck();
+        try {
+            ByteBuf b = ring.get(seq).line();
+            writer.writeServiceCheck(b, check);
+        } finally {
+            ring.publish(seq);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.utils.Backoff;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventPoller;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.ProducerType;
+
+import javax.annotation.Nullable;
+
+
+/**
+ * Client with several ring buffers (shards), each producer thread publishes into the shard selected by its id,
+ * so producers on different shards don't contend on the same sequence.
+ *
+ * Events and service checks may have a separate ring (lane), so they don't compete with metrics for slots.
+ *
+ * One consumer thread drains shards round-robin, metrics of one thread keep their order.
+ * Event lane is polled first in each round, but not more than a small batch, so events aren't delayed
+ * by a backlog of metrics and a burst of events delays metrics by one batch at most
+ */
+public class ShardedDatadogClient extends RingBufferDatadogClient {
+
+    /**
+     * Park time of idle consumer after spinning and yielding
+     */
+    private static final long IDLE_PARK_NANOS = 100_000;
+
+    /**
+     * Max events polled from one shard in a row, so busy shard doesn't starve the others
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Max events polled from event lane in a row, events are much larger and rarer than metrics
+     */
+    private static final int MAX_EVENT_BATCH = 16;
+
+    private static final int MIN_SHARD_SIZE = 64;
+
+    private final PacketSender sender;
+    private final RingBuffer<MetricSlot>[] shards;
+    private final EventPoller<MetricSlot>[] pollers;
+
+    /**
+     * Ring for events and service checks, null if they are published into shards
+     */
+    @Nullable
+    private final RingBuffer<MetricSlot> eventLane;
+
+    @Nullable
+    private final EventPoller<MetricSlot> eventPoller;
+    private final int mask;
+    private final EventPoller.Handler<MetricSlot> handler;
+    private final Thread consumer;
+
+    /**
+     * Events polled from current ring and max events to poll from it, used only by consumer thread
+     */
+    private int polled;
+    private int limit;
+
+    private volatile boolean running = true;
+
+    /**
+     * Consumer stops draining shards after this time, set on stop
+     */
+    private volatile long deadline;
+
+
+    /**
+     * @param b builder
+     */
+    public ShardedDatadogClient(DatadogBuilder b) {
+        super(b);
+        if (b.getSenders() > 1)
+            throw new IllegalArgumentException("Several senders are supported only by " + DisruptorDatadogClient.class.getSimpleName());
+
+        if (b.isWaitStrategySet() || b.getProducerType() != ProducerType.MULTI)
+            throw new IllegalArgumentException("Wait strategy and producer type are supported only by " + DisruptorDatadogClient.class.getSimpleName());
+
+        this.sender = new PacketSender(b, telemetry, health);
+
+        int count = b.getShards();
+        int shardSize = Math.max(b.getQueueSize() / count, MIN_SHARD_SIZE);
+
+        this.mask = count - 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        RingBuffer<MetricSlot>[] shards = new RingBuffer[count];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        EventPoller<MetricSlot>[] pollers = new EventPoller[count];
+        for (int i = 0; i < count; i++) {
+            // consumer polls shards, so wait strategy is never used to wait and busy spin doesn't signal on publish
+            shards[i] = RingBuffer.createMultiProducer(newEventFactory(b.isDirectMemoryUsed(), b.getBufferSize()),
+                    shardSize, new BusySpinWaitStrategy());
+
+            pollers[i] = shards[i].newPoller();
+            shards[i].addGatingSequences(pollers[i].getSequence());
+        }
+
+        this.shards = shards;
+        this.pollers = pollers;
+
+        if (b.getEventLaneSize() > 0) {
+            this.eventLane = RingBuffer.createMultiProducer(newEventFactory(b.isDirectMemoryUsed(), b.getBufferSize()),
+                    b.getEventLaneSize(), new BusySpinWaitStrategy());
+
+            this.eventPoller = eventLane.newPoller();
+            eventLane.addGatingSequences(eventPoller.getSequence());
+        } else {
+            this.eventLane = null;
+            this.eventPoller = null;
+        }
+
+        this.handler = (slot, seq, eob) -> {
+            sendSafely(slot);
+            return ++polled < limit;
+        };
+
+        this.consumer = b.getThreadFactory().newThread(this::consume);
+        this.consumer.start();
+
+        start();
+    }
+
+
+    private void consume() {
+        Backoff backoff = new Backoff(IDLE_PARK_NANOS);
+        while (true) {
+            int total = pollShards();
+            if (total > 0) {
+                flushPacket();
+                backoff.reset();
+            } else if (running) {
+                backoff.idle();
+            } else {
+                break;
+            }
+
+            if (!running && System.nanoTime() - deadline > 0)
+                break;
+        }
+    }
+
+    /**
+     * @return number of events polled from event lane and all shards
+     */
+    private int pollShards() {
+        int total = 0;
+        if (eventPoller != null)
+            total += poll(eventPoller, MAX_EVENT_BATCH);
+
+        for (EventPoller<MetricSlot> poller : pollers)
+            total += poll(poller, MAX_BATCH);
+
+        return total;
+    }
+
+    /**
+     * @return number of events polled from the ring
+     */
+    private int poll(EventPoller<MetricSlot> poller, int limit) {
+        this.polled = 0;
+        this.limit = limit;
+        try {
+            poller.poll(handler);
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+
+        return polled;
+    }
+
+    /**
+     * Exception should not be thrown from poller handler, otherwise the event is polled again
+     */
+    private void sendSafely(MetricSlot slot) {
+        try {
+            sender.send(slot, false);
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+    }
+
+    private void flushPacket() {
+        try {
+            sender.flush();
+        } catch (Throwable th) {
+            errorHandler.accept(th);
+        }
+    }
+
+
+    @Override
+    protected RingBuffer<MetricSlot> ring() {
+        return shards[(int) Thread.currentThread().getId() & mask];
+    }
+
+    @Override
+    protected RingBuffer<MetricSlot> eventRing() {
+        return eventLane != null ? eventLane : ring();
+    }
+
+    @Override
+    protected long getQueueDepth() {
+        long depth = 0;
+        for (RingBuffer<MetricSlot> shard : shards)
+            depth += shard.getBufferSize() - shard.remainingCapacity();
+
+        return depth;
+    }
+
+    @Override
+    protected long getQueueCapacity() {
+        long capacity = 0;
+        for (RingBuffer<MetricSlot> shard : shards)
+            capacity += shard.getBufferSize();
+
+        return capacity;
+    }
+
+    @Override
+    protected long getEventQueueDepth() {
+        return eventLane != null ? eventLane.getBufferSize() - eventLane.remainingCapacity() : 0;
+    }
+
+    @Override
+    protected long getEventQueueCapacity() {
+        return eventLane != null ? eventLane.getBufferSize() : 0;
+    }
+
+    @Override
+    protected void drain(long deadline) {
+        this.deadline = deadline;
+        this.running = false;
+
+        join(consumer, deadline);
+        reportUndrained();
+        closeSafely(sender);
+    }
+}
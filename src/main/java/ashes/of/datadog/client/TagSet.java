@@ -0,0 +1,150 @@
+package ashes.of.datadog.client;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * Immutable compiled tags.
+ *
+ * Runs of constant tags are encoded once to UTF-8 (tag1:value,tag2), so constant tags cost one copy per send.
+ * Dynamic tags are evaluated and encoded on each send, refreshed tags are copied from cached bytes.
+ * Order of tags is preserved
+ */
+public final class TagSet {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    public static final TagSet EMPTY = new TagSet(new byte[][] { EMPTY_BYTES }, new ArrayList<>());
+
+    /**
+     * Encoded constant tags between dynamic ones, constant.length == dynamic.size() + 1
+     */
+    private final byte[][] constant;
+    private final List<Supplier<String>> dynamic;
+
+    private TagSet(byte[][] constant, List<Supplier<String>> dynamic) {
+        this.constant = constant;
+        this.dynamic = dynamic;
+    }
+
+    static TagSet of(List<Supplier<String>> tags) {
+        if (tags.isEmpty())
+            return EMPTY;
+
+        List<byte[]> constant = new ArrayList<>();
+        List<Supplier<String>> dynamic = new ArrayList<>();
+        List<String> run = new ArrayList<>();
+        for (Supplier<String> tag : tags) {
+            if (tag instanceof Tags.ConstantTag) {
+                run.add(tag.get());
+            } else {
+                constant.add(String.join(",", run).getBytes(UTF_8));
+                dynamic.add(tag);
+                run.clear();
+            }
+        }
+
+        constant.add(String.join(",", run).getBytes(UTF_8));
+
+        return new TagSet(constant.toArray(new byte[0][]), dynamic);
+    }
+
+    public boolean isEmpty() {
+        return dynamic.isEmpty() && constant[0].length == 0;
+    }
+
+    /**
+     * @return true if there are no dynamic tags
+     */
+    public boolean isConstant() {
+        return dynamic.isEmpty();
+    }
+
+    /**
+     * Stops periodic refresh of refreshed tags, their last values are still written
+     */
+    void cancelRefresh() {
+        for (Supplier<String> tag : dynamic) {
+            if (tag instanceof RefreshedTag)
+                ((RefreshedTag) tag).cancel();
+        }
+    }
+
+    /**
+     * Writes tags separated by comma
+     *
+     * @param b buffer
+     */
+    public void write(ByteBuf b) {
+        b.writeBytes(constant[0]);
+
+        boolean first = constant[0].length == 0;
+        for (int i = 0; i < dynamic.size(); i++) {
+            if (!first)
+                b.writeByte(',');
+
+            Supplier<String> tag = dynamic.get(i);
+            if (tag instanceof RefreshedTag) {
+                b.writeBytes(((RefreshedTag) tag).bytes());
+            } else {
+                b.writeCharSequence(tag.get(), UTF_8);
+            }
+            first = false;
+
+            byte[] run = constant[i + 1];
+            if (run.length > 0) {
+                b.writeByte(',');
+                b.writeBytes(run);
+            }
+        }
+    }
+
+    /**
+     * Writes global and metric tags: |#global_tag1,global_tag2,tag1:value
+     *
+     * @param b buffer
+     * @param global global tags
+     * @param metric metric tags
+     */
+    public static void write(ByteBuf b, TagSet global, TagSet metric) {
+        boolean hasGlobalTags = !global.isEmpty();
+        boolean hasAdditionalTags = !metric.isEmpty();
+        if (!hasGlobalTags && !hasAdditionalTags)
+            return;
+
+        b.writeByte('|');
+        b.writeByte('#');
+
+        global.write(b);
+
+        if (!hasAdditionalTags)
+            return;
+
+        if (hasGlobalTags)
+            b.writeByte(',');
+
+        metric.write(b);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(new String(constant[0], UTF_8));
+        for (int i = 0; i < dynamic.size(); i++) {
+            if (sb.length() > 0)
+                sb.append(',');
+
+            sb.append(dynamic.get(i).get());
+
+            if (constant[i + 1].length > 0)
+                sb.append(',').append(new String(constant[i + 1], UTF_8));
+        }
+
+        return sb.toString();
+    }
+}
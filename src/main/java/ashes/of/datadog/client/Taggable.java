@@ -1,6 +1,7 @@
 package ashes.of.datadog.client;
 
 import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.function.Supplier;
 
 
@@ -63,6 +64,22 @@ public interface Taggable<B extends Taggable<B>> {
      */
     B tag(String tag, Supplier<Object> sup);
 
+    /**
+     * Adds tag with subtag which is evaluated periodically on shared thread instead of each send.
+     * Use it for tags with slow suppliers, value may be stale up to refresh interval.
+     * Refresh stops when the client is stopped
+     *
+     * @param tag tag name
+     * @param sup subtag supplier
+     * @param refreshInterval interval between supplier invocations
+     * @return builder
+     */
+    @SuppressWarnings("unchecked")
+    default B tag(String tag, Supplier<Object> sup, Duration refreshInterval) {
+        tags().tag(tag, sup, refreshInterval);
+        return (B) this;
+    }
+
     /**
      * @return tags
      */
@@ -1,23 +1,121 @@
 package ashes.of.datadog.client;
 
 
+import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
+/**
+ * Mutable list of tags, use {@link #compile()} to get encoded immutable copy
+ */
 public class Tags implements Taggable<Tags> {
 
+    /**
+     * Tag with constant value
+     */
+    static class ConstantTag implements Supplier<String> {
+        private final String tag;
+
+        ConstantTag(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public String get() {
+            return tag;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof ConstantTag && tag.equals(((ConstantTag) o).tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return tag.hashCode();
+        }
+    }
+
+    /**
+     * Tag with value evaluated on each send
+     */
+    static class DynamicTag implements Supplier<String> {
+        private final String tag;
+        private final Supplier<Object> sup;
+
+        DynamicTag(String tag, Supplier<Object> sup) {
+            this.tag = tag;
+            this.sup = sup;
+        }
+
+        @Override
+        public String get() {
+            Object o = sup.get();
+            return o == null ? tag : tag + ':' + o;
+        }
+    }
+
+
     private final List<Supplier<String>> list = new ArrayList<>();
 
+    /**
+     * Receives exceptions of refreshed tag suppliers
+     */
+    private final Consumer<Throwable> errorHandler;
+
+    /**
+     * Stops refresh of refreshed tags, e.g. when client which owns the tags is stopped
+     */
+    private final BooleanSupplier stopped;
+
+    @Nullable
+    private TagSet compiled;
+
+    public Tags() {
+        this(ex -> {});
+    }
+
+    /**
+     * @param errorHandler receives exceptions of refreshed tag suppliers
+     */
+    public Tags(Consumer<Throwable> errorHandler) {
+        this(errorHandler, () -> false);
+    }
+
+    /**
+     * @param errorHandler receives exceptions of refreshed tag suppliers
+     * @param stopped returns true when refreshed tags should stop refreshing
+     */
+    public Tags(Consumer<Throwable> errorHandler, BooleanSupplier stopped) {
+        this.errorHandler = errorHandler;
+        this.stopped = stopped;
+    }
+
+    @Override
+    public Tags tag(String tag) {
+        return add(new ConstantTag(tag));
+    }
+
     @Override
     public Tags tag(String tag, Supplier<Object> sup) {
-        list.add(() -> {
-            Object o = sup.get();
-            return o == null ? tag : tag + ':' + o;
-        });
+        return add(new DynamicTag(tag, sup));
+    }
 
+    @Override
+    public Tags tag(String tag, Supplier<Object> sup, Duration refreshInterval) {
+        return add(new RefreshedTag(tag, sup, refreshInterval, errorHandler, stopped));
+    }
+
+    private Tags add(Supplier<String> tag) {
+        list.add(tag);
+        compiled = null;
         return this;
     }
 
@@ -27,13 +125,28 @@ public class Tags implements Taggable<Tags> {
     }
 
     public List<Supplier<String>> list() {
-        return list;
+        return Collections.unmodifiableList(list);
     }
 
     public boolean isEmpty() {
         return list.isEmpty();
     }
 
+    /**
+     * Constant tags are encoded once, result is cached until tags are changed
+     *
+     * @return immutable encoded copy of tags
+     */
+    public TagSet compile() {
+        TagSet tagSet = compiled;
+        if (tagSet == null) {
+            tagSet = TagSet.of(list);
+            compiled = tagSet;
+        }
+
+        return tagSet;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,89 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.MetricType;
+
+import java.util.function.LongSupplier;
+
+
+/**
+ * Sends client telemetry as datadog.client.* metrics through the client itself.
+ *
+ * Telemetry metrics have global tags, but don't have client prefix
+ */
+class TelemetryReporter {
+
+    private static final String PREFIX = "datadog.client.";
+
+    /**
+     * Cumulative counter sent as delta since the last report
+     */
+    private static class Delta {
+        private final CompiledMetric metric;
+        private final LongSupplier value;
+        private long reported;
+
+        private Delta(CompiledMetric metric, LongSupplier value) {
+            this.metric = metric;
+            this.value = value;
+        }
+    }
+
+    private final Delta[] counters;
+    private final CompiledMetric queueDepth;
+    private final CompiledMetric queueCapacity;
+    private final CompiledMetric eventQueueDepth;
+    private final CompiledMetric eventQueueCapacity;
+    private final ClientTelemetry telemetry;
+
+
+    TelemetryReporter(ClientTelemetry telemetry, TagSet global) {
+        MetricWriter writer = new MetricWriter(null, global);
+        DroppedMetrics dropped = telemetry.getDropped();
+
+        this.telemetry = telemetry;
+        this.counters = new Delta[] {
+                counter(writer, "metrics", telemetry::getMetrics),
+                counter(writer, "events", telemetry::getEvents),
+                counter(writer, "service_checks", telemetry::getServiceChecks),
+                counter(writer, "packets", telemetry::getPackets),
+                counter(writer, "bytes", telemetry::getBytes),
+                counter(writer, "errors", telemetry::getErrors),
+                counter(writer, "packets_dropped", telemetry::getDroppedPackets),
+                counter(writer, "dropped", dropped::getTotal),
+        };
+
+        this.queueDepth = writer.compile(PREFIX + "queue.depth", MetricType.GAUGE, 1, new Tags());
+        this.queueCapacity = writer.compile(PREFIX + "queue.capacity", MetricType.GAUGE, 1, new Tags());
+        this.eventQueueDepth = writer.compile(PREFIX + "event_queue.depth", MetricType.GAUGE, 1, new Tags());
+        this.eventQueueCapacity = writer.compile(PREFIX + "event_queue.capacity", MetricType.GAUGE, 1, new Tags());
+    }
+
+    private static Delta counter(MetricWriter writer, String name, LongSupplier value) {
+        return new Delta(writer.compile(PREFIX + name, MetricType.COUNTER, 1, new Tags()), value);
+    }
+
+
+    /**
+     * Sends deltas of counters and current queue depth, depth of event lane is sent only if it is used
+     *
+     * @param client client to send telemetry
+     */
+    synchronized void report(AbstractDatadogClient client) {
+        for (Delta counter : counters) {
+            long value = counter.value.getAsLong();
+            long delta = value - counter.reported;
+            counter.reported = value;
+
+            client.send(counter.metric, delta);
+        }
+
+        client.send(queueDepth, telemetry.getQueueDepth());
+        client.send(queueCapacity, telemetry.getQueueCapacity());
+
+        long eventCapacity = telemetry.getEventQueueCapacity();
+        if (eventCapacity > 0) {
+            client.send(eventQueueDepth, telemetry.getEventQueueDepth());
+            client.send(eventQueueCapacity, eventCapacity);
+        }
+    }
+}
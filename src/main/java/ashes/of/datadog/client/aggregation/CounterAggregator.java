@@ -0,0 +1,63 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.Tags;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
+
+
+/**
+ * Sums counter deltas per metric key between flushes.
+ *
+ * Sums are striped, so concurrent producers don't contend on one cell. Flush subtracts the sum it read
+ * instead of resetting the adder, so deltas added concurrently stay for the next flush.
+ *
+ * Agent sums counters per flush window anyway, so only one line per key is sent on flush.
+ * Keys are never evicted, so cardinality of counters should be bounded
+ */
+public class CounterAggregator {
+
+    private final ConcurrentMap<MetricKey, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Adds value to counter
+     *
+     * @param metric counter name
+     * @param value counter delta
+     * @param tags counter tags
+     */
+    public void count(String metric, long value, Tags tags) {
+        count(MetricKey.of(metric, tags), value);
+    }
+
+    /**
+     * Adds value to counter
+     *
+     * @param key counter key
+     * @param value counter delta
+     */
+    public void count(MetricKey key, long value) {
+        LongAdder sum = counters.get(key);
+        if (sum == null)
+            sum = counters.computeIfAbsent(key, k -> new LongAdder());
+
+        sum.add(value);
+    }
+
+    /**
+     * Resets all counters and passes non zero sums to consumer
+     *
+     * @param consumer consumer for aggregated counters
+     */
+    public void flush(ObjLongConsumer<MetricKey> consumer) {
+        counters.forEach((key, sum) -> {
+            long value = sum.sum();
+            if (value != 0) {
+                sum.add(-value);
+                consumer.accept(key, value);
+            }
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.Tags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Accumulates distribution values in quantile sketches between flushes.
+ *
+ * On flush each sketch is sent as multi-value lines (value:value:...|d|@rate):
+ * buckets with the same count are sent in one line with sample rate 1/count,
+ * so agent restores the original number of values.
+ * Keys are never evicted, so cardinality of distributions should be bounded
+ */
+public class DistributionAggregator {
+
+    @FunctionalInterface
+    public interface LineConsumer {
+
+        /**
+         * @param key distribution key
+         * @param values colon separated values
+         * @param sampleRate sample rate of values
+         */
+        void accept(MetricKey key, String values, double sampleRate);
+    }
+
+
+    /**
+     * Significant digits of bucket values, enough for 1% accuracy
+     */
+    private static final int DIGITS = 4;
+
+    private final ConcurrentMap<MetricKey, QuantileSketch> sketches = new ConcurrentHashMap<>();
+    private final double relativeAccuracy;
+    private final int maxBuckets;
+    private final int maxLineLength;
+
+    /**
+     * @param relativeAccuracy relative accuracy of sketches
+     * @param maxBuckets max number of buckets in each sketch
+     * @param maxLineLength max length of values in one line
+     */
+    public DistributionAggregator(double relativeAccuracy, int maxBuckets, int maxLineLength) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+        this.maxLineLength = maxLineLength;
+    }
+
+
+    /**
+     * Adds value to distribution
+     *
+     * @param metric distribution name
+     * @param value distribution value
+     * @param tags distribution tags
+     * @return false if value isn't finite and was dropped
+     */
+    public boolean distribution(String metric, double value, Tags tags) {
+        return distribution(MetricKey.of(metric, tags), value);
+    }
+
+    /**
+     * Adds value to distribution
+     *
+     * @param key distribution key
+     * @param value distribution value
+     * @return false if value isn't finite and was dropped
+     */
+    public boolean distribution(MetricKey key, double value) {
+        QuantileSketch sketch = sketches.get(key);
+        if (sketch == null)
+            sketch = sketches.computeIfAbsent(key, k -> new QuantileSketch(relativeAccuracy, maxBuckets));
+
+        return sketch.add(value);
+    }
+
+
+    /**
+     * Clears all sketches and passes their content to consumer
+     *
+     * @param consumer consumer for distribution lines
+     */
+    public void flush(LineConsumer consumer) {
+        sketches.forEach((key, sketch) -> {
+            QuantileSketch copy = sketch.copyAndClear();
+            if (copy.isEmpty())
+                return;
+
+            Map<Long, List<Double>> valuesByCount = new TreeMap<>();
+            copy.forEach((value, count) -> valuesByCount
+                    .computeIfAbsent(count, c -> new ArrayList<>())
+                    .add(value));
+
+            valuesByCount.forEach((count, values) -> flush(consumer, key, values, 1.0 / count));
+        });
+    }
+
+    private void flush(LineConsumer consumer, MetricKey key, List<Double> values, double sampleRate) {
+        StringBuilder line = new StringBuilder();
+        for (double value : values) {
+            String formatted = format(value);
+            if (line.length() > 0 && line.length() + 1 + formatted.length() > maxLineLength) {
+                consumer.accept(key, line.toString(), sampleRate);
+                line.setLength(0);
+            }
+
+            if (line.length() > 0)
+                line.append(':');
+
+            line.append(formatted);
+        }
+
+        consumer.accept(key, line.toString(), sampleRate);
+    }
+
+    private static String format(double value) {
+        if (value == 0 || Double.isInfinite(value))
+            return String.valueOf(value);
+
+        double scale = Math.pow(10, DIGITS - (int) Math.ceil(Math.log10(Math.abs(value))));
+        return String.valueOf(Math.round(value * scale) / scale);
+    }
+}
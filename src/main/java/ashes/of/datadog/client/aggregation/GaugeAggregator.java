@@ -0,0 +1,136 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.Tags;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjLongConsumer;
+
+
+/**
+ * Keeps the last value of each gauge between flushes.
+ *
+ * Agent keeps only the last gauge value per flush window, so intermediate updates are never sent.
+ * Every known gauge is sent on each flush, unless unchanged gauges are skipped.
+ * Keys are never evicted, so cardinality of gauges should be bounded
+ */
+public class GaugeAggregator {
+
+    /**
+     * Immutable gauge value, bits and type are published together
+     */
+    private static class Value {
+        private final long bits;
+        private final boolean floating;
+
+        private Value(long bits, boolean floating) {
+            this.bits = bits;
+            this.floating = floating;
+        }
+
+        private boolean same(Value other) {
+            return bits == other.bits && floating == other.floating;
+        }
+    }
+
+    private static class Slot {
+        @Nullable
+        private volatile Value value;
+
+        /**
+         * Last flushed value, accessed only by flushing thread
+         */
+        @Nullable
+        private Value flushed;
+
+        private void set(long bits, boolean floating) {
+            this.value = new Value(bits, floating);
+        }
+    }
+
+
+    private final ConcurrentMap<MetricKey, Slot> gauges = new ConcurrentHashMap<>();
+    private final boolean skipUnchanged;
+
+    /**
+     * @param skipUnchanged skip gauges which values weren't changed since the last flush
+     */
+    public GaugeAggregator(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+
+    /**
+     * Sets the latest value of gauge
+     *
+     * @param metric gauge name
+     * @param value gauge value
+     * @param tags gauge tags
+     */
+    public void gauge(String metric, long value, Tags tags) {
+        slot(MetricKey.of(metric, tags)).set(value, false);
+    }
+
+    /**
+     * Sets the latest value of gauge
+     *
+     * @param metric gauge name
+     * @param value gauge value
+     * @param tags gauge tags
+     */
+    public void gauge(String metric, double value, Tags tags) {
+        slot(MetricKey.of(metric, tags)).set(Double.doubleToRawLongBits(value), true);
+    }
+
+    /**
+     * Sets the latest value of gauge
+     *
+     * @param key gauge key
+     * @param value gauge value
+     */
+    public void gauge(MetricKey key, long value) {
+        slot(key).set(value, false);
+    }
+
+    /**
+     * Sets the latest value of gauge
+     *
+     * @param key gauge key
+     * @param value gauge value
+     */
+    public void gauge(MetricKey key, double value) {
+        slot(key).set(Double.doubleToRawLongBits(value), true);
+    }
+
+    private Slot slot(MetricKey key) {
+        Slot slot = gauges.get(key);
+        return slot != null ? slot : gauges.computeIfAbsent(key, k -> new Slot());
+    }
+
+
+    /**
+     * Passes the latest values of gauges to consumers
+     *
+     * @param longs consumer for gauges with long values
+     * @param doubles consumer for gauges with double values
+     */
+    public void flush(ObjLongConsumer<MetricKey> longs, ObjDoubleConsumer<MetricKey> doubles) {
+        gauges.forEach((key, slot) -> {
+            Value value = slot.value;
+            if (value == null)
+                return;
+
+            if (skipUnchanged && slot.flushed != null && slot.flushed.same(value))
+                return;
+
+            slot.flushed = value;
+            if (value.floating) {
+                doubles.accept(key, Double.longBitsToDouble(value.bits));
+            } else {
+                longs.accept(key, value.bits);
+            }
+        });
+    }
+}
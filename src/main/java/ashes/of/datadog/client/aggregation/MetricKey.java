@@ -0,0 +1,79 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.Tags;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+
+/**
+ * Metric name with resolved tag values, identifies single time series for aggregation
+ */
+public class MetricKey {
+
+    private final String name;
+    private final List<String> tags;
+    private final int hash;
+
+    public MetricKey(String name, List<String> tags) {
+        this.name = name;
+        this.tags = Collections.unmodifiableList(tags);
+        this.hash = 31 * name.hashCode() + tags.hashCode();
+    }
+
+    /**
+     * Creates key from metric name and current values of tags
+     *
+     * @param name metric name
+     * @param tags metric tags
+     * @return new key
+     */
+    public static MetricKey of(String name, Tags tags) {
+        List<Supplier<String>> list = tags.list();
+        List<String> resolved = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++)
+            resolved.add(list.get(i).get());
+
+        return new MetricKey(name, resolved);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return resolved tag values
+     */
+    public List<String> getTags() {
+        return tags;
+    }
+
+    /**
+     * @return new tags with resolved values
+     */
+    public Tags tags() {
+        return new Tags().tags(tags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MetricKey)) return false;
+
+        MetricKey key = (MetricKey) o;
+
+        return hash == key.hash && name.equals(key.name) && tags.equals(key.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name + tags;
+    }
+}
@@ -0,0 +1,310 @@
+package ashes.of.datadog.client.aggregation;
+
+
+/**
+ * Mergeable quantile sketch with relative error guarantee (DDSketch).
+ *
+ * Values are counted in logarithmically sized buckets, so any quantile is returned
+ * with relative error not greater than configured accuracy.
+ * Buckets are stored in primitive arrays, if number of buckets exceeds the limit, the lowest buckets are collapsed
+ */
+public class QuantileSketch {
+
+    @FunctionalInterface
+    public interface BucketConsumer {
+
+        /**
+         * @param value representative value of bucket
+         * @param count number of values in bucket
+         */
+        void accept(double value, long count);
+    }
+
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double multiplier;
+    private final double minIndexableValue;
+
+    /**
+     * Range of indexes of finite values
+     */
+    private final int minIndex;
+    private final int maxIndex;
+
+    private final Buckets positive;
+    private final Buckets negative;
+    private long zeroCount;
+
+
+    /**
+     * @param relativeAccuracy relative accuracy of quantiles, in (0, 1) range
+     * @param maxBuckets max number of buckets for positive and negative values each
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1)
+            throw new IllegalArgumentException("Relative accuracy should be in (0, 1) range: " + relativeAccuracy);
+
+        if (maxBuckets <= 0)
+            throw new IllegalArgumentException("Max buckets should be positive: " + maxBuckets);
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.multiplier = 1 / Math.log(gamma);
+        this.minIndexableValue = Double.MIN_NORMAL * gamma;
+        this.minIndex = (int) Math.ceil(Math.log(minIndexableValue) * multiplier);
+        this.maxIndex = (int) Math.ceil(Math.log(Double.MAX_VALUE) * multiplier);
+        this.positive = new Buckets(maxBuckets);
+        this.negative = new Buckets(maxBuckets);
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    private int index(double value) {
+        int index = (int) Math.ceil(Math.log(value) * multiplier);
+        return Math.max(minIndex, Math.min(maxIndex, index));
+    }
+
+    /**
+     * @return representative value of bucket, the highest bucket is capped by max double
+     */
+    private double value(int index) {
+        return Math.min(Double.MAX_VALUE, 2 / (gamma + 1) * Math.pow(gamma, index));
+    }
+
+
+    /**
+     * Adds value to sketch, NaN and infinite values are skipped
+     *
+     * @param value value
+     * @return false if value isn't finite and wasn't added
+     */
+    public synchronized boolean add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return false;
+
+        if (value > minIndexableValue) {
+            positive.add(index(value), 1);
+        } else if (value < -minIndexableValue) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds all values from other sketch with the same accuracy
+     *
+     * @param other sketch to merge
+     */
+    public void merge(QuantileSketch other) {
+        if (other.gamma != gamma)
+            throw new IllegalArgumentException("Sketches with different accuracy can't be merged");
+
+        QuantileSketch copy = other.copy();
+        synchronized (this) {
+            copy.positive.forEach(positive::add);
+            copy.negative.forEach(negative::add);
+            zeroCount += copy.zeroCount;
+        }
+    }
+
+    /**
+     * @return copy of this sketch
+     */
+    public synchronized QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy, positive.maxBuckets);
+        positive.forEach(copy.positive::add);
+        negative.forEach(copy.negative::add);
+        copy.zeroCount = zeroCount;
+
+        return copy;
+    }
+
+    /**
+     * @return copy of this sketch, this sketch is cleared
+     */
+    public synchronized QuantileSketch copyAndClear() {
+        QuantileSketch copy = copy();
+        clear();
+
+        return copy;
+    }
+
+    public synchronized void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+    }
+
+
+    /**
+     * @return number of added values
+     */
+    public synchronized long getCount() {
+        return positive.total + negative.total + zeroCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    /**
+     * @param quantile quantile in [0, 1] range
+     * @return approximate value of quantile, or NaN if sketch is empty
+     */
+    public synchronized double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new IllegalArgumentException("Quantile should be in [0, 1] range: " + quantile);
+
+        long count = getCount();
+        if (count == 0)
+            return Double.NaN;
+
+        long rank = (long) (quantile * (count - 1));
+        long n = 0;
+        for (int i = negative.maxIndex; i >= negative.minIndex; i--) {
+            n += negative.get(i);
+            if (n > rank)
+                return -value(i);
+        }
+
+        n += zeroCount;
+        if (n > rank)
+            return 0;
+
+        for (int i = positive.minIndex; i <= positive.maxIndex; i++) {
+            n += positive.get(i);
+            if (n > rank)
+                return value(i);
+        }
+
+        return value(positive.maxIndex);
+    }
+
+    /**
+     * Passes all non empty buckets to consumer in ascending order of values
+     *
+     * @param consumer bucket consumer
+     */
+    public synchronized void forEach(BucketConsumer consumer) {
+        for (int i = negative.maxIndex; i >= negative.minIndex; i--) {
+            long count = negative.get(i);
+            if (count > 0)
+                consumer.accept(-value(i), count);
+        }
+
+        if (zeroCount > 0)
+            consumer.accept(0, zeroCount);
+
+        positive.forEach((index, count) -> consumer.accept(value(index), count));
+    }
+
+
+    @FunctionalInterface
+    private interface IndexConsumer {
+        void accept(int index, long count);
+    }
+
+    /**
+     * Dense store of bucket counts, counts[i] is count of bucket with index (offset + i)
+     */
+    private static class Buckets {
+        private static final long[] EMPTY = new long[0];
+        private static final int GROWTH = 64;
+
+        /**
+         * Bound of indexes, so loops over the range and its width don't overflow
+         */
+        private static final int MAX_INDEX = 1 << 30;
+
+        private final int maxBuckets;
+
+        private long[] counts = EMPTY;
+        private int offset;
+        private int minIndex = Integer.MAX_VALUE;
+        private int maxIndex = Integer.MIN_VALUE;
+        private long total;
+
+        private Buckets(int maxBuckets) {
+            this.maxBuckets = maxBuckets;
+        }
+
+        private long get(int index) {
+            return counts[index - offset];
+        }
+
+        private void add(int index, long count) {
+            if (index < minIndex || index > maxIndex)
+                index = extend(index);
+
+            counts[index - offset] += count;
+            total += count;
+        }
+
+        /**
+         * Extends range of buckets to index, collapses the lowest buckets if range is too wide
+         *
+         * @return index of bucket for value
+         */
+        private int extend(int index) {
+            index = Math.max(-MAX_INDEX, Math.min(MAX_INDEX, index));
+            int newMin = Math.min(minIndex, index);
+            int newMax = Math.max(maxIndex, index);
+
+            long collapsed = 0;
+            if ((long) newMax - newMin + 1 > maxBuckets) {
+                newMin = newMax - maxBuckets + 1;
+                for (int i = minIndex; i < newMin && i <= maxIndex; i++) {
+                    collapsed += counts[i - offset];
+                    counts[i - offset] = 0;
+                }
+
+                index = Math.max(index, newMin);
+            }
+
+            if (newMin < offset || newMax >= offset + counts.length) {
+                int length = newMax - newMin + 1;
+                long[] extended = new long[Math.min(maxBuckets, length + GROWTH)];
+
+                // leave free space on the side where range grows
+                int newOffset = index == newMin ?
+                        newMax - extended.length + 1 :
+                        newMin;
+
+                for (int i = Math.max(minIndex, newMin); i <= maxIndex; i++)
+                    extended[i - newOffset] = counts[i - offset];
+
+                counts = extended;
+                offset = newOffset;
+            }
+
+            minIndex = newMin;
+            maxIndex = newMax;
+            counts[newMin - offset] += collapsed;
+
+            return index;
+        }
+
+        private void forEach(IndexConsumer consumer) {
+            for (int i = minIndex; i <= maxIndex; i++) {
+                long count = counts[i - offset];
+                if (count > 0)
+                    consumer.accept(i, count);
+            }
+        }
+
+        private void clear() {
+            for (int i = minIndex; i <= maxIndex; i++)
+                counts[i - offset] = 0;
+
+            minIndex = Integer.MAX_VALUE;
+            maxIndex = Integer.MIN_VALUE;
+            total = 0;
+        }
+    }
+}
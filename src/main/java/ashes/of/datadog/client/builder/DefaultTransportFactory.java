@@ -0,0 +1,25 @@
+package ashes.of.datadog.client.builder;
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.transport.Transport;
+import ashes.of.datadog.client.transport.UdpTransport;
+import ashes.of.datadog.client.transport.UnixSocketTransport;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates unix socket transport if socket path is set, otherwise UDP transport with channel from channel factory
+ */
+public class DefaultTransportFactory implements TransportFactory {
+
+    @Override
+    public Transport createTransport(DatadogBuilder b) throws IOException {
+        String path = b.getUnixSocketPath();
+        if (path != null)
+            return new UnixSocketTransport(path);
+
+        return new UdpTransport(b.getChannelFactory().createChannel(b.getAddress()),
+                b.getSendTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    }
+}
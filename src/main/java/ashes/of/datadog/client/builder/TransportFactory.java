@@ -0,0 +1,11 @@
+package ashes.of.datadog.client.builder;
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.transport.Transport;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface TransportFactory {
+    Transport createTransport(DatadogBuilder b) throws IOException;
+}
@@ -9,13 +9,41 @@ public class Counter extends Metric<Counter> {
         super(client, name);
     }
 
+    /**
+     * Sends values with probability of sample rate, agent multiplies received values by 1/rate
+     *
+     * @param sampleRate sample rate in (0, 1] range
+     * @return this counter
+     */
+    public Counter sampleRate(double sampleRate) {
+        setSampleRate(sampleRate);
+        return this;
+    }
+
+    /**
+     * Freezes the counter and pre-encodes its name, type and tags, so only the value is formatted on each send.
+     * Tags can't be changed after compilation
+     *
+     * @return this counter
+     */
+    public Counter compile() {
+        checkNotCompiled();
+        compiled = client.compile(name, MetricType.COUNTER, sampleRate, tags);
+        return this;
+    }
+
     /**
      * Adjusts counter by a given value
      *
      * @param value counter value
      */
     public void count(long value) {
-        client.count(name, value, tags);
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
+        client.count(name, value, sampleRate, tags);
     }
 
     /**
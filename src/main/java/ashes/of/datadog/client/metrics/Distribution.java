@@ -0,0 +1,72 @@
+package ashes.of.datadog.client.metrics;
+
+import ashes.of.datadog.client.DatadogClient;
+
+
+/**
+ * Distributions measure the global statistical distribution of a set of values.
+ *
+ * Unlike histograms, which are aggregated by each agent, distributions are aggregated on the server side,
+ * so percentiles are calculated across all hosts
+ */
+public class Distribution extends Metric<Distribution> {
+
+    /**
+     * @param client datadog client
+     * @param name metric name
+     */
+    public Distribution(DatadogClient client, String name) {
+        super(client, name);
+    }
+
+    /**
+     * Sends values with probability of sample rate, agent counts each received value 1/rate times
+     *
+     * @param sampleRate sample rate in (0, 1] range
+     * @return this distribution
+     */
+    public Distribution sampleRate(double sampleRate) {
+        setSampleRate(sampleRate);
+        return this;
+    }
+
+    /**
+     * Freezes the distribution and pre-encodes its name, type and tags, so only the value is formatted on each send.
+     * Tags can't be changed after compilation
+     *
+     * @return this distribution
+     */
+    public Distribution compile() {
+        checkNotCompiled();
+        compiled = client.compile(name, MetricType.DISTRIBUTION, sampleRate, tags);
+        return this;
+    }
+
+    /**
+     * Records a value for the distribution
+     *
+     * @param value distribution value
+     */
+    public void value(long value) {
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
+        client.distribution(name, value, sampleRate, tags);
+    }
+
+    /**
+     * Records a value for the distribution
+     *
+     * @param value distribution value
+     */
+    public void value(double value) {
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
+        client.distribution(name, value, sampleRate, tags);
+    }
+}
@@ -12,12 +12,29 @@ public class Gauge extends Metric<Gauge> {
         super(client, time);
     }
 
+    /**
+     * Freezes the gauge and pre-encodes its name, type and tags, so only the value is formatted on each send.
+     * Tags can't be changed after compilation
+     *
+     * @return this gauge
+     */
+    public Gauge compile() {
+        checkNotCompiled();
+        compiled = client.compile(name, MetricType.GAUGE, tags);
+        return this;
+    }
+
     /**
      * Records a value for the gauge
      *
      * @param value value for gauge
      */
     public void value(long value) {
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
         client.gauge(name, value, tags);
     }
 
@@ -27,6 +44,11 @@ public class Gauge extends Metric<Gauge> {
      * @param value value for gauge
      */
     public void value(double value) {
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
         client.gauge(name, value, tags);
     }
 }
@@ -27,13 +27,41 @@ public class Histogram extends Metric<Histogram> {
         super(client, name);
     }
 
+    /**
+     * Sends values with probability of sample rate, agent counts each received value 1/rate times
+     *
+     * @param sampleRate sample rate in (0, 1] range
+     * @return this histogram
+     */
+    public Histogram sampleRate(double sampleRate) {
+        setSampleRate(sampleRate);
+        return this;
+    }
+
+    /**
+     * Freezes the histogram and pre-encodes its name, type and tags, so only the value is formatted on each send.
+     * Tags can't be changed after compilation
+     *
+     * @return this histogram
+     */
+    public Histogram compile() {
+        checkNotCompiled();
+        compiled = client.compile(name, MetricType.HISTOGRAM, sampleRate, tags);
+        return this;
+    }
+
     /**
      * Records a value for the histogram
      *
      * @param value histogram value
      */
     public void value(long value) {
-        client.histogram(name, value, tags);
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
+        client.histogram(name, value, sampleRate, tags);
     }
 
     /**
@@ -42,6 +70,11 @@ public class Histogram extends Metric<Histogram> {
      * @param value histogram value
      */
     public void value(double value) {
-        client.histogram(name, value, tags);
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
+        client.histogram(name, value, sampleRate, tags);
     }
 }
@@ -1,29 +1,85 @@
 package ashes.of.datadog.client.metrics;
 
 
+import ashes.of.datadog.client.CompiledMetric;
 import ashes.of.datadog.client.DatadogClient;
 import ashes.of.datadog.client.Taggable;
 import ashes.of.datadog.client.Tags;
 
+import javax.annotation.Nullable;
+import java.time.Duration;
 import java.util.function.Supplier;
 
 
 public abstract class Metric<M extends Metric<M>> implements Taggable<M> {
     protected final DatadogClient client;
     protected final String name;
-    protected final Tags tags = new Tags();
+    protected final Tags tags;
+
+    /**
+     * Sample rate, supported only by counters, histograms, distributions and timers
+     */
+    protected double sampleRate = 1;
+
+    /**
+     * Compiled metric, null if metric isn't compiled
+     */
+    @Nullable
+    protected CompiledMetric compiled;
 
     public Metric(DatadogClient client, String name) {
         this.client = client;
         this.name = name;
+        this.tags = new Tags(client::handleError, client::isStopped);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public M tag(String tag) {
+        checkNotCompiled();
+        tags.tag(tag);
+        return (M) this;
     }
 
     @Override
     public M tag(String tag, Supplier<Object> sub) {
+        checkNotCompiled();
         tags.tag(tag, sub);
         return (M) this;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public M tag(String tag, Supplier<Object> sup, Duration refreshInterval) {
+        checkNotCompiled();
+        tags.tag(tag, sup, refreshInterval);
+        return (M) this;
+    }
+
+    /**
+     * @return true if metric is compiled and can't be changed
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    protected void setSampleRate(double sampleRate) {
+        checkNotCompiled();
+        if (!(sampleRate > 0 && sampleRate <= 1))
+            throw new IllegalArgumentException("Sample rate should be in (0, 1] range: " + sampleRate);
+
+        this.sampleRate = sampleRate;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    protected void checkNotCompiled() {
+        if (compiled != null)
+            throw new IllegalStateException("Metric " + name + " is compiled and can't be changed");
+    }
+
     @Override
     public Tags tags() {
         return tags;
@@ -7,6 +7,7 @@ public enum MetricType {
     COUNTER('c'),
     GAUGE('g'),
     HISTOGRAM('h'),
+    DISTRIBUTION('d'),
     SET('s');
 
     private final char type;
@@ -9,6 +9,18 @@ public class Set extends Metric<Set> {
         super(client, name);
     }
 
+    /**
+     * Freezes the set and pre-encodes its name, type and tags, so only the value is formatted on each send.
+     * Tags can't be changed after compilation
+     *
+     * @return this set
+     */
+    public Set compile() {
+        checkNotCompiled();
+        compiled = client.compile(name, MetricType.SET, tags);
+        return this;
+    }
+
 
     /**
      * Records a value for the set
@@ -16,6 +28,11 @@ public class Set extends Metric<Set> {
      * @param value value for set
      */
     public void add(long value) {
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
         client.set(name, value, tags);
     }
 
@@ -25,6 +42,11 @@ public class Set extends Metric<Set> {
      * @param value value for set
      */
     public void add(String value) {
+        if (compiled != null) {
+            client.record(compiled, value);
+            return;
+        }
+
         client.set(name, value, tags);
     }
 }
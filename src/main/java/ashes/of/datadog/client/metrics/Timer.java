@@ -17,6 +17,29 @@ public class Timer extends Metric<Timer> {
         super(client, name);
     }
 
+    /**
+     * Sends values with probability of sample rate, agent counts each received value 1/rate times
+     *
+     * @param sampleRate sample rate in (0, 1] range
+     * @return this timer
+     */
+    public Timer sampleRate(double sampleRate) {
+        setSampleRate(sampleRate);
+        return this;
+    }
+
+    /**
+     * Freezes the timer and pre-encodes its name, type and tags, so only the value is formatted on each send.
+     * Tags can't be changed after compilation
+     *
+     * @return this timer
+     */
+    public Timer compile() {
+        checkNotCompiled();
+        compiled = client.compileTimer(name, sampleRate, tags);
+        return this;
+    }
+
     /**
      * Restarts the timer
      */
@@ -57,14 +80,23 @@ public class Timer extends Metric<Timer> {
      * @param unit time unit
      */
     public void elapsed(long time, TimeUnit unit) {
-        client.nanos(name, unit.toNanos(time), tags);
+        record(unit.toNanos(time));
     }
 
     /**
      * @see this#elapsed(long, TimeUnit)
      */
     public void elapsed(Duration duration) {
-        client.nanos(name, duration.toNanos(), tags);
+        record(duration.toNanos());
+    }
+
+    private void record(long nanos) {
+        if (compiled != null) {
+            client.record(compiled, nanos / 1_000_000_000.);
+            return;
+        }
+
+        client.nanos(name, nanos, sampleRate, tags);
     }
 
 
@@ -0,0 +1,204 @@
+package ashes.of.datadog.client.ring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Multi producer, single consumer ring of variable length records in one contiguous buffer.
+ *
+ * Each record is an int header followed by payload, records are aligned to 8 bytes.
+ * Header is length of payload plus one, zero header means that record isn't committed yet, negative header is padding.
+ * Headers are kept in an atomic array with one element per 8 bytes of the buffer, their space in the buffer is reserved.
+ * Producers claim space by CAS on tail, copy the payload and commit the record by ordered write of the header.
+ * If record doesn't fit into the end of the buffer, the rest is claimed as padding and record starts from the beginning.
+ * Consumer reads committed records in claim order, zeroes their headers and moves head, so memory is used
+ * in proportion to the size of records, not to the number of slots
+ */
+public class ByteRing {
+
+    @FunctionalInterface
+    public interface RecordHandler {
+
+        /**
+         * @param buf ring buffer, should not be modified
+         * @param index index of the first byte of record
+         * @param length length of record
+         */
+        void onRecord(ByteBuf buf, int index, int length) throws Exception;
+    }
+
+
+    private static final int HEADER_LENGTH = 4;
+    private static final int ALIGNMENT = 8;
+
+    private final ByteBuf buffer;
+    private final int capacity;
+    private final int mask;
+    private final int maxRecordLength;
+
+    /**
+     * Headers of records by index of record divided by alignment
+     */
+    private final AtomicIntegerArray headers;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Last seen head, producers read the real head only if the ring looks full
+     */
+    private volatile long headCache;
+
+
+    /**
+     * @param capacity capacity in bytes, should be power of two
+     * @param directMemoryUsed use off-heap memory
+     */
+    public ByteRing(int capacity, boolean directMemoryUsed) {
+        if (capacity < 1024 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity should be power of two and not less than 1024: " + capacity);
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.maxRecordLength = capacity / 4 - HEADER_LENGTH;
+
+        this.buffer = directMemoryUsed ?
+                Unpooled.directBuffer(capacity, capacity) :
+                Unpooled.buffer(capacity, capacity);
+
+        this.headers = new AtomicIntegerArray(capacity / ALIGNMENT);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return max length of one record
+     */
+    public int getMaxRecordLength() {
+        return maxRecordLength;
+    }
+
+    /**
+     * @return number of bytes claimed by producers and not released by consumer yet
+     */
+    public long size() {
+        return tail.get() - head.get();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+
+    /**
+     * Copies readable bytes of buffer into the ring as one record, waits while the ring is full
+     *
+     * @param src record
+     */
+    public void put(ByteBuf src) {
+        while (!offer(src))
+            LockSupport.parkNanos(1_000);
+    }
+
+    /**
+     * Copies readable bytes of buffer into the ring as one record
+     *
+     * @param src record
+     * @return false if the ring is full
+     */
+    public boolean offer(ByteBuf src) {
+        int length = src.readableBytes();
+        if (length > maxRecordLength)
+            throw new IllegalArgumentException(String.format("Record is too large: %d bytes, max %d bytes", length, maxRecordLength));
+
+        long position = claim(align(HEADER_LENGTH + length));
+        if (position < 0)
+            return false;
+
+        int index = (int) (position & mask);
+        buffer.setBytes(index + HEADER_LENGTH, src, src.readerIndex(), length);
+        headers.lazySet(index / ALIGNMENT, length + 1);
+
+        return true;
+    }
+
+    /**
+     * Claims space for record, pads the end of the buffer if record doesn't fit
+     *
+     * @return position of record or -1 if the ring is full
+     */
+    private long claim(int required) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            int padding = capacity - index < required ? capacity - index : 0;
+            long next = position + padding + required;
+
+            if (next - headCache > capacity) {
+                long current = head.get();
+                headCache = current;
+                if (next - current > capacity)
+                    return -1;
+            }
+
+            if (!tail.compareAndSet(position, next))
+                continue;
+
+            if (padding > 0) {
+                headers.lazySet(index / ALIGNMENT, -padding);
+                position += padding;
+            }
+
+            return position;
+        }
+    }
+
+
+    /**
+     * Reads all committed records, each record is released right after handling
+     *
+     * @param handler record handler
+     * @return number of read records
+     * @throws Exception exception from handler, the record is released anyway
+     */
+    public int read(RecordHandler handler) throws Exception {
+        int count = 0;
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            int header = headers.get(index / ALIGNMENT);
+            if (header == 0)
+                return count;
+
+            if (header < 0) {
+                // padding till the end of the buffer
+                headers.lazySet(index / ALIGNMENT, 0);
+                position -= header;
+                head.lazySet(position);
+                continue;
+            }
+
+            int length = header - 1;
+            int size = align(HEADER_LENGTH + length);
+            try {
+                count++;
+                handler.onRecord(buffer, index + HEADER_LENGTH, length);
+            } finally {
+                headers.lazySet(index / ALIGNMENT, 0);
+                position += size;
+                head.lazySet(position);
+            }
+        }
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
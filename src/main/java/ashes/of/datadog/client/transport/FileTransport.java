@@ -0,0 +1,84 @@
+package ashes.of.datadog.client.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+
+/**
+ * Appends packets to a file, one line per metric. Packets are buffered and written on flush
+ * or when buffer is full, so a batch of packets costs one write
+ */
+public class FileTransport implements Transport {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param channel channel to write packets
+     * @param bufferSize size of write buffer, packets which don't fit are written directly
+     */
+    public FileTransport(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Opens the file for append, creates it if it doesn't exist
+     *
+     * @param path path to the file
+     * @return file transport
+     */
+    public static FileTransport open(Path path) throws IOException {
+        return new FileTransport(FileChannel.open(path, CREATE, WRITE, APPEND), 1 << 16);
+    }
+
+
+    @Override
+    public long send(ByteBuffer... packet) throws IOException {
+        long length = 1;
+        for (ByteBuffer part : packet)
+            length += part.remaining();
+
+        if (length > buffer.remaining())
+            flush();
+
+        if (length > buffer.capacity()) {
+            long written = 0;
+            while (written < length - 1)
+                written += channel.write(packet);
+
+            buffer.put((byte) '\n');
+            return written;
+        }
+
+        for (ByteBuffer part : packet)
+            buffer.put(part);
+
+        buffer.put((byte) '\n');
+        return length - 1;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
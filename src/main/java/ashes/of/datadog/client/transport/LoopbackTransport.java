@@ -0,0 +1,74 @@
+package ashes.of.datadog.client.transport;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Keeps sent packets in memory, for tests and experiments with the client pipeline without network.
+ *
+ * Packets which don't fit into the queue are not sent
+ */
+public class LoopbackTransport implements Transport {
+
+    private final BlockingQueue<String> packets;
+
+    /**
+     * @param capacity max number of packets which aren't polled yet
+     */
+    public LoopbackTransport(int capacity) {
+        this.packets = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public LoopbackTransport() {
+        this(65536);
+    }
+
+
+    @Override
+    public long send(ByteBuffer... packet) {
+        int length = 0;
+        for (ByteBuffer part : packet)
+            length += part.remaining();
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (ByteBuffer part : packet) {
+            int remaining = part.remaining();
+            part.duplicate().get(bytes, offset, remaining);
+            offset += remaining;
+        }
+
+        if (!packets.offer(new String(bytes, StandardCharsets.UTF_8)))
+            return 0;
+
+        for (ByteBuffer part : packet)
+            part.position(part.limit());
+
+        return length;
+    }
+
+    /**
+     * @param ms max time to wait for packet
+     * @return the oldest packet or null if there are no packets
+     */
+    @Nullable
+    public String poll(long ms) throws InterruptedException {
+        return packets.poll(ms, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of packets which aren't polled yet
+     */
+    public int size() {
+        return packets.size();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,40 @@
+package ashes.of.datadog.client.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Sends packets of encoded metrics to the agent or any other sink, used only by one consumer thread except probes.
+ *
+ * Packet is a newline separated lines in DogStatsD format, it may be split into several buffers,
+ * transport sends them as one packet
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * Sends remaining bytes of buffers as one packet
+     *
+     * @param packet parts of packet
+     * @return number of bytes sent, less than remaining bytes if packet isn't sent or sent partially
+     */
+    long send(ByteBuffer... packet) throws IOException;
+
+    /**
+     * Sends buffered packets if transport buffers them, invoked by consumer at the end of batch.
+     * Buffered packets are discarded if flush fails, they are counted as dropped
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Checks that receiver is reachable, invoked periodically while sending is suspended.
+     * Unlike other methods, probe is invoked by the scheduler thread of the client, concurrently with
+     * send and flush of the consumer thread, so it should be thread safe. Probes of one transport aren't concurrent
+     *
+     * @throws IOException if receiver isn't reachable
+     */
+    default void probe() throws IOException {
+    }
+}
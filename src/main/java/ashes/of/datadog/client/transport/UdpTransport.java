@@ -0,0 +1,113 @@
+package ashes.of.datadog.client.transport;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Sends each packet as one datagram to the connected channel.
+ *
+ * If socket buffer of non-blocking channel is full, transport may wait for write readiness of the channel
+ * up to send timeout, so bursts stall consumer thread for a while instead of losing packets
+ */
+public class UdpTransport implements Transport {
+
+    private final DatagramChannel channel;
+    private final long sendTimeoutNanos;
+
+    /**
+     * Buffer for probes, agent doesn't send anything back
+     */
+    private final ByteBuffer probe = ByteBuffer.allocate(64);
+
+    /**
+     * Selector for write readiness, opened on the first full socket buffer
+     */
+    @Nullable
+    private Selector selector;
+
+    /**
+     * @param channel connected datagram channel
+     */
+    public UdpTransport(DatagramChannel channel) {
+        this(channel, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param channel connected datagram channel
+     * @param sendTimeout max time to wait for write readiness of each packet, zero to drop packet immediately
+     * @param unit unit of send timeout
+     */
+    public UdpTransport(DatagramChannel channel, long sendTimeout, TimeUnit unit) {
+        this.channel = channel;
+        this.sendTimeoutNanos = unit.toNanos(sendTimeout);
+    }
+
+
+    @Override
+    public long send(ByteBuffer... packet) throws IOException {
+        long sent = channel.write(packet);
+        if (sent > 0 || sendTimeoutNanos <= 0 || channel.isBlocking())
+            return sent;
+
+        return send(packet, System.nanoTime() + sendTimeoutNanos);
+    }
+
+    /**
+     * Waits for write readiness and retries until packet is sent or deadline is reached
+     *
+     * @return number of bytes sent, zero if packet isn't sent before deadline
+     */
+    private long send(ByteBuffer[] packet, long deadline) throws IOException {
+        if (selector == null) {
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_WRITE);
+        }
+
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return 0;
+
+            selector.select(Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 1));
+            selector.selectedKeys().clear();
+
+            long sent = channel.write(packet);
+            if (sent > 0)
+                return sent;
+        }
+    }
+
+    /**
+     * Port unreachable error of connected channel is reported by the next operation on it, so probe reads
+     * the error caused by the previous probe and sends an empty datagram, which agent ignores.
+     * Reads and writes of datagram channel are thread safe and probe buffer is used only by probes,
+     * so probe doesn't interfere with send of the consumer thread
+     */
+    @Override
+    public void probe() throws IOException {
+        if (!channel.isBlocking()) {
+            probe.clear();
+            channel.read(probe);
+        }
+
+        probe.clear();
+        probe.limit(0);
+        channel.write(probe);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (selector != null)
+                selector.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package ashes.of.datadog.client.transport;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Stream unix domain socket to DogStatsD, each packet is sent as one frame prefixed with
+ * its length (4 bytes, little endian), as agent expects on stream socket.
+ * Stream socket is disabled in agent by default, it's enabled by {@code dogstatsd_stream_socket},
+ * the default {@code dogstatsd_socket} is a datagram socket and refuses stream connections.
+ *
+ * Socket is blocking, so full socket buffer of agent slows down consumer thread instead of losing metrics.
+ * Socket is connected lazily and reconnected after write failure, e.g. after restart of agent, attempts are delayed
+ * with exponential backoff, packets sent while the socket isn't connected are dropped.
+ * Unix domain sockets are supported since Java 16, they are opened by reflection to keep Java 8 compatibility
+ */
+public class UnixSocketTransport implements Transport {
+
+    private static final int HEADER_SIZE = 4;
+
+    private static final long MIN_RECONNECT_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.SECONDS.toNanos(10);
+
+    private final SocketAddress address;
+
+    /**
+     * Connected socket, null until connected or after failure
+     */
+    @Nullable
+    private SocketChannel channel;
+
+    /**
+     * Time of the next connection attempt and delay before the one after it, reset on successful connect
+     */
+    private long reconnectAt;
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Header and parts of packet, grows for packets with more parts
+     */
+    private ByteBuffer[] frame = new ByteBuffer[3];
+
+
+    /**
+     * Socket isn't connected here, so transport can be created before agent is up
+     *
+     * @param path path to stream socket file of agent, value of {@code dogstatsd_stream_socket}, e.g. /var/run/datadog/dsd.stream.socket
+     * @throws UnsupportedOperationException if JVM doesn't support unix domain sockets
+     */
+    public UnixSocketTransport(String path) throws IOException {
+        this.address = address(path);
+        this.reconnectAt = System.nanoTime();
+    }
+
+    /**
+     * @return true if JVM supports unix domain sockets
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName("java.net.UnixDomainSocketAddress");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return {@code StandardProtocolFamily.UNIX}
+     */
+    public static ProtocolFamily unix() {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedOperationException("Unix domain sockets are supported since Java 16", e);
+        }
+    }
+
+    /**
+     * @return {@code UnixDomainSocketAddress} of path
+     */
+    public static SocketAddress address(String path) throws IOException {
+        try {
+            Class<?> type = Class.forName("java.net.UnixDomainSocketAddress");
+            return (SocketAddress) invoke(type, "of", String.class, path);
+        } catch (ClassNotFoundException e) {
+            throw new UnsupportedOperationException("Unix domain sockets are supported since Java 16", e);
+        }
+    }
+
+    private static Object invoke(Class<?> type, String method, Class<?> param, Object arg) throws IOException {
+        try {
+            return type.getMethod(method, param).invoke(null, arg);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+
+            throw new IOException(cause);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Unix domain sockets are supported since Java 16", e);
+        }
+    }
+
+
+    /**
+     * Writes packet as one frame, connects the socket if it isn't connected and reconnection isn't delayed.
+     * Socket is closed on failure, because part of the frame may be written already
+     *
+     * @return number of payload bytes written, all remaining bytes of packet or zero if socket isn't connected
+     */
+    @Override
+    public long send(ByteBuffer... packet) throws IOException {
+        SocketChannel channel = connect();
+        if (channel == null)
+            return 0;
+
+        if (frame.length < packet.length + 1)
+            frame = new ByteBuffer[packet.length + 1];
+
+        int length = 0;
+        for (int i = 0; i < packet.length; i++) {
+            length += packet[i].remaining();
+            frame[i + 1] = packet[i];
+        }
+
+        header.clear();
+        header.putInt(length).flip();
+        frame[0] = header;
+        try {
+            long remaining = HEADER_SIZE + length;
+            while (remaining > 0)
+                remaining -= channel.write(frame, 0, packet.length + 1);
+        } catch (IOException | RuntimeException e) {
+            disconnect();
+            throw e;
+        } finally {
+            for (int i = 1; i <= packet.length; i++)
+                frame[i] = null;
+        }
+
+        return length;
+    }
+
+    /**
+     * @return connected socket or null if connection is delayed
+     */
+    @Nullable
+    private SocketChannel connect() throws IOException {
+        if (channel != null)
+            return channel;
+
+        if (System.nanoTime() - reconnectAt < 0)
+            return null;
+
+        SocketChannel channel = (SocketChannel) invoke(SocketChannel.class, "open", ProtocolFamily.class, unix());
+        try {
+            channel.connect(address);
+            channel.configureBlocking(true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            delayReconnect();
+            throw e;
+        }
+
+        this.channel = channel;
+        this.reconnectDelay = MIN_RECONNECT_DELAY;
+        return channel;
+    }
+
+    private void disconnect() {
+        SocketChannel channel = this.channel;
+        this.channel = null;
+        delayReconnect();
+        try {
+            if (channel != null)
+                channel.close();
+        } catch (IOException e) {
+            // socket is broken anyway
+        }
+    }
+
+    private void delayReconnect() {
+        reconnectAt = System.nanoTime() + reconnectDelay;
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+    }
+
+    @Override
+    public void close() throws IOException {
+        SocketChannel channel = this.channel;
+        this.channel = null;
+        if (channel != null)
+            channel.close();
+    }
+}
@@ -0,0 +1,46 @@
+package ashes.of.datadog.client.utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Idle strategy of polling consumer: spins, then yields and then parks for fixed time.
+ *
+ * Not thread safe, each consumer thread should have its own instance
+ */
+public class Backoff {
+
+    private static final int SPINS = 100;
+    private static final int YIELDS = 100;
+
+    private final long parkNanos;
+    private int idle;
+
+    /**
+     * @param parkNanos park time after spinning and yielding
+     */
+    public Backoff(long parkNanos) {
+        this.parkNanos = parkNanos;
+    }
+
+    /**
+     * Waits a bit after consumer found nothing to do
+     */
+    public void idle() {
+        if (idle < SPINS) {
+            idle++;
+        } else if (idle < SPINS + YIELDS) {
+            idle++;
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(parkNanos);
+        }
+    }
+
+    /**
+     * Resets backoff after consumer did some work
+     */
+    public void reset() {
+        idle = 0;
+    }
+}
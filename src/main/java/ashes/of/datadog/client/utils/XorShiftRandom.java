@@ -0,0 +1,59 @@
+package ashes.of.datadog.client.utils;
+
+
+/**
+ * Xorshift64* pseudo random generator, one instance per thread.
+ *
+ * Not cryptographically secure, it's only used to decide which sampled metrics are sent
+ */
+public final class XorShiftRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private static final ThreadLocal<XorShiftRandom> CURRENT = ThreadLocal.withInitial(() ->
+            new XorShiftRandom(System.nanoTime() ^ Thread.currentThread().getId() * GOLDEN_GAMMA));
+
+    private long state;
+
+    /**
+     * @param seed initial state, zero seed is replaced because zero state is never changed
+     */
+    public XorShiftRandom(long seed) {
+        this.state = seed != 0 ? seed : GOLDEN_GAMMA;
+    }
+
+    /**
+     * @return generator of current thread
+     */
+    public static XorShiftRandom current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Decides whether a value with sample rate should be sent
+     *
+     * @param sampleRate sample rate, values with rate greater or equal to 1 are always sent
+     * @return true with probability of sample rate
+     */
+    public static boolean sample(double sampleRate) {
+        return sampleRate >= 1 || current().nextDouble() < sampleRate;
+    }
+
+
+    public long nextLong() {
+        long x = state;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        state = x;
+
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /**
+     * @return uniformly distributed value in [0, 1) range
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,185 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.Counter;
+import ashes.of.datadog.client.metrics.MetricType;
+import ashes.of.datadog.client.metrics.ServiceCheck;
+import ashes.of.datadog.server.DatadogServer;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class ByteRingDatadogClientTest {
+
+    private static final InetSocketAddress address = new InetSocketAddress("localhost", 31337);
+
+    private DatadogServer server;
+    private DatadogClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new DatadogServer(address);
+        server.start();
+
+        client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .tag("env", "junit")
+                .useByteRing()
+                .byteRingSize(4096)
+                .build();
+    }
+
+    @After
+    public void shutDown() {
+        client.stop();
+        server.stop();
+    }
+
+
+    @Test
+    public void buildShouldCreateByteRingClient() {
+        assertTrue(client instanceof ByteRingDatadogClient);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singleProducerShouldBeRejected() {
+        new DatadogBuilder()
+                .address(address)
+                .useByteRing()
+                .producerType(ProducerType.SINGLE)
+                .build();
+    }
+
+    @Test
+    public void countShouldSendMetricWithTags() {
+        client.count("count", 42, "foo:bar");
+
+        assertEquals("test.count:42|c|#env:junit,foo:bar", server.poll());
+    }
+
+    @Test
+    public void gaugeShouldSendMetricWithDoubleValue() {
+        client.gauge("gauge", 0.001337);
+
+        assertEquals("test.gauge:0.001337|g|#env:junit", server.poll());
+    }
+
+    @Test
+    public void compiledCounterShouldSendMetric() {
+        Counter counter = client.counter("inc")
+                .tag("foo", "bar")
+                .compile();
+
+        counter.inc();
+
+        assertEquals("test.inc:1|c|#env:junit,foo:bar", server.poll());
+    }
+
+    @Test
+    public void serviceCheckShouldSendCheck() {
+        client.serviceCheck("Holy Shit", ServiceCheck.Status.WARNING)
+                .send();
+
+        assertEquals("_sc|Holy Shit|1|#env:junit", server.poll());
+    }
+
+    @Test
+    public void metricsShouldBeSentWhenRingWrapsAround() {
+        for (int i = 0; i < 1000; i++) {
+            client.count("count", i);
+
+            assertEquals("test.count:" + i + "|c|#env:junit", server.poll());
+        }
+    }
+
+    /**
+     * @see DatadogBuilder#usePacking()
+     */
+    @Test
+    public void packingShouldJoinMetricsWithNewlines() {
+        DatadogClient packed = new DatadogBuilder()
+                .address(address)
+                .useByteRing()
+                .usePacking()
+                .build();
+
+        try {
+            for (int i = 0; i < 100; i++)
+                packed.count("count", i);
+
+            List<String> lines = new ArrayList<>();
+            while (lines.size() < 100) {
+                String packet = server.poll();
+                assertTrue("Not all metrics received: " + lines, packet != null);
+
+                lines.addAll(Arrays.asList(packet.split("\n")));
+            }
+
+            assertEquals(100, lines.size());
+            for (int i = 0; i < 100; i++)
+                assertEquals("count:" + i + "|c", lines.get(i));
+        } finally {
+            packed.stop();
+        }
+    }
+
+
+    /**
+     * @see DatadogBuilder#overflowPolicy(OverflowPolicy)
+     */
+    @Test
+    public void tooLargeMetricShouldBeCountedAsDropped() {
+        char[] name = new char[2048];
+        Arrays.fill(name, 'x');
+
+        client.gauge(new String(name), 1);
+        client.gauge("gauge", 1);
+
+        assertEquals("test.gauge:1|g|#env:junit", server.poll());
+        assertEquals(1, client.getDroppedMetrics().getMetrics(MetricType.GAUGE));
+    }
+
+    @Test
+    public void dropNewestShouldDropMetricsWhenRingIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient dropping = new DatadogBuilder()
+                .address(address)
+                .useByteRing()
+                .byteRingSize(1024)
+                .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .threadFactory(r -> new Thread(() -> {
+                    try {
+                        started.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    r.run();
+                }))
+                .build();
+
+        try {
+            // 4 bytes header + 9 bytes of metric, aligned to 16 bytes
+            for (int i = 0; i < 100; i++)
+                dropping.count("count", 1);
+
+            assertEquals(100 - 1024 / 16, dropping.getDroppedMetrics().getMetrics(MetricType.COUNTER));
+
+            started.countDown();
+            for (int i = 0; i < 1024 / 16; i++)
+                assertEquals("count:1|c", server.poll());
+        } finally {
+            dropping.stop();
+        }
+    }
+}
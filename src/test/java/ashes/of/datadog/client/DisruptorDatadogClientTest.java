@@ -3,14 +3,29 @@ package ashes.of.datadog.client;
 import ashes.of.datadog.client.metrics.*;
 import ashes.of.datadog.client.metrics.Event.AlertType;
 import ashes.of.datadog.client.metrics.Event.Priority;
+import ashes.of.datadog.client.transport.LoopbackTransport;
 import ashes.of.datadog.server.DatadogServer;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.ProducerType;
 import org.junit.*;
 
 import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 
 public class DisruptorDatadogClientTest {
@@ -221,4 +236,674 @@ public class DisruptorDatadogClientTest {
 
         assertEquals("_sc|Holy Shit|2|h:ashesofmbr|#howareyou:verygood|m:Oh shit... all goes pussy", server.poll());
     }
+
+    @Test
+    public void longEventTextAndServiceCheckMessageShouldBeTruncatedToMaxEventSize() {
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .maxEventSize(40)
+                .build(DisruptorDatadogClient::new);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++)
+            text.append('x');
+
+        try {
+            client.event("Hello", text.toString()).send();
+            client.serviceCheck("Holy Shit", ServiceCheck.Status.OK)
+                    .message(text.toString())
+                    .send();
+
+            assertEquals("_e{5,24}:Hello|xxxxxxxxxxxxxxxxxxxxxxxx", server.poll());
+            assertEquals("_sc|Holy Shit|0|m:xxxxxxxxxxxxxxxxxxxxxx", server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void slotBufferGrownByLongLineShouldBeShrunkOnReuse() {
+        MetricSlot slot = new MetricSlot(false, 64);
+        slot.line().writeZero(1024);
+
+        assertEquals(64, slot.line().capacity());
+    }
+
+    @Test
+    public void truncateShouldNotSplitCodePoints() {
+        assertEquals("ab", MetricWriter.truncate("ab\u00e9", 3));
+        assertEquals("ab\u00e9", MetricWriter.truncate("ab\u00e9", 4));
+        assertEquals("a", MetricWriter.truncate("a\ud83d\ude00", 4));
+        assertEquals("", MetricWriter.truncate("abc", -5));
+    }
+
+
+    /**
+     * @see DatadogBuilder#usePacking()
+     */
+    @Test
+    public void packingShouldJoinMetricsWithNewlines() {
+        DatadogClient packed = new DatadogBuilder()
+                .address(address)
+                .usePacking()
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            for (int i = 0; i < 10; i++)
+                packed.count("count", i);
+
+            List<String> lines = new ArrayList<>();
+            while (lines.size() < 10) {
+                String packet = server.poll();
+                assertTrue("Not all metrics received: " + lines, packet != null);
+
+                lines.addAll(Arrays.asList(packet.split("\n")));
+            }
+
+            assertEquals(10, lines.size());
+            for (int i = 0; i < 10; i++)
+                assertEquals("count:" + i + "|c", lines.get(i));
+        } finally {
+            packed.stop();
+        }
+    }
+
+    /**
+     * @see DatadogBuilder#maxPacketSize(int)
+     */
+    @Test
+    public void packingShouldNotExceedMaxPacketSize() {
+        DatadogClient packed = new DatadogBuilder()
+                .address(address)
+                .usePacking()
+                .maxPacketSize(32)
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            for (int i = 0; i < 20; i++)
+                packed.count("count", 10);
+
+            int received = 0;
+            while (received < 20) {
+                String packet = server.poll();
+                assertTrue("Not all metrics received: " + received, packet != null);
+                assertTrue("Packet is too large: " + packet, packet.length() <= 32);
+
+                received += packet.split("\n").length;
+            }
+
+            assertEquals(20, received);
+        } finally {
+            packed.stop();
+        }
+    }
+
+
+    /**
+     * @see DatadogBuilder#aggregateCounters()
+     */
+    @Test
+    public void aggregatedCountersShouldBeSentOncePerFlush() {
+        DatadogClient aggregated = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .aggregateCounters()
+                .flushInterval(Duration.ofMillis(100))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            Counter counter = aggregated.counter("inc")
+                    .tag("env", "junit");
+
+            for (int i = 0; i < 5; i++)
+                counter.inc();
+
+            aggregated.count("inc", 10, "env:junit");
+            aggregated.decrement("inc", "env:test");
+
+            List<String> lines = Arrays.asList(server.poll(), server.poll());
+            assertTrue(lines.toString(), lines.contains("test.inc:15|c|#env:junit"));
+            assertTrue(lines.toString(), lines.contains("test.inc:-1|c|#env:test"));
+            assertEquals(null, server.poll(300));
+        } finally {
+            aggregated.stop();
+        }
+    }
+
+    @Test
+    public void aggregatedCountersShouldBeSentOnStopAndDroppedAfterIt() {
+        DatadogClient aggregated = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .aggregateCounters()
+                .aggregateGauges()
+                .build(DisruptorDatadogClient::new);
+
+        aggregated.count("inc", 10);
+        aggregated.stop();
+
+        assertEquals("test.inc:10|c", server.poll());
+
+        aggregated.count("inc", 1);
+        aggregated.gauge("gauge", 1);
+        assertEquals(1, aggregated.getDroppedMetrics().getMetrics(MetricType.COUNTER));
+        assertEquals(1, aggregated.getDroppedMetrics().getMetrics(MetricType.GAUGE));
+    }
+
+    /**
+     * @see DatadogBuilder#aggregateDistributions()
+     * @see DatadogBuilder#sendTimersAsDistributions()
+     */
+    @Test
+    public void aggregatedTimersShouldBeSentAsDistributionsWithSampleRate() {
+        DatadogClient aggregated = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .aggregateDistributions()
+                .sendTimersAsDistributions()
+                .flushInterval(Duration.ofMillis(100))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            Timer timer = aggregated.timer("time");
+            timer.millis(5000);
+            timer.millis(5000);
+            timer.millis(5000);
+
+            assertThat(server.poll(), matchesPattern("test\\.time:5\\.003\\|d\\|@0\\.3333+"));
+        } finally {
+            aggregated.stop();
+        }
+    }
+
+
+    /**
+     * @see DatadogBuilder#overflowPolicy(OverflowPolicy)
+     */
+    @Test
+    public void dropNewestShouldDropMetricsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        DatadogClient dropping = new DatadogBuilder()
+                .address(address)
+                .queueSize(4)
+                .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .errorHandler(errors::add)
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            for (int i = 0; i < 10; i++)
+                dropping.count("count", i);
+
+            dropping.event("Hello", "dropped").send();
+
+            DroppedMetrics dropped = dropping.getDroppedMetrics();
+            assertEquals(6, dropped.getMetrics(MetricType.COUNTER));
+            assertEquals(1, dropped.getEvents());
+            assertEquals(7, dropped.getTotal());
+
+            started.countDown();
+            for (int i = 0; i < 4; i++)
+                assertEquals("count:" + i + "|c", server.poll());
+        } finally {
+            dropping.stop();
+        }
+
+        assertEquals(1, errors.size());
+        assertEquals(7, ((MetricsDroppedException) errors.get(0)).getDropped());
+    }
+
+    /**
+     * @see DatadogClient#stop()
+     */
+    @Test
+    public void stopShouldSendQueuedMetricsAndDropNewOnes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .usePacking()
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .build(DisruptorDatadogClient::new);
+
+        for (int i = 0; i < 10; i++)
+            client.count("count", i);
+
+        Thread starter = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            started.countDown();
+        });
+
+        starter.start();
+        client.stop();
+        starter.join();
+
+        List<String> lines = new ArrayList<>();
+        while (lines.size() < 10) {
+            String packet = server.poll();
+            assertTrue("Not all metrics sent on stop: " + lines, packet != null);
+
+            lines.addAll(Arrays.asList(packet.split("\n")));
+        }
+
+        for (int i = 0; i < 10; i++)
+            assertEquals("count:" + i + "|c", lines.get(i));
+
+        client.count("count", 10);
+        assertEquals(1, client.getDroppedMetrics().getMetrics(MetricType.COUNTER));
+        assertEquals(null, server.poll(100));
+    }
+
+    @Test
+    public void stopShouldStopRefreshOfGlobalAndMetricTags() throws Exception {
+        AtomicInteger global = new AtomicInteger();
+        AtomicInteger local = new AtomicInteger();
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .tag("global", global::incrementAndGet, Duration.ofMillis(20))
+                .build(DisruptorDatadogClient::new);
+
+        client.counter("count")
+                .tag("local", local::incrementAndGet, Duration.ofMillis(20));
+
+        Thread.sleep(100);
+        client.stop();
+        Thread.sleep(40);
+        int lastGlobal = global.get();
+        int lastLocal = local.get();
+        Thread.sleep(100);
+
+        assertTrue(lastGlobal > 1 && lastLocal > 1);
+        assertEquals(lastGlobal, global.get());
+        assertEquals(lastLocal, local.get());
+    }
+
+    @Test
+    public void stopShouldWaitForInFlightFlushBeforeFinalFlush() throws Exception {
+        CountDownLatch flushing = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .aggregateCounters()
+                .flushInterval(Duration.ofMillis(50))
+                .build(b -> new DisruptorDatadogClient(b) {
+                    @Override
+                    protected void flush() {
+                        if (running.incrementAndGet() > 1)
+                            overlaps.incrementAndGet();
+
+                        flushing.countDown();
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                        super.flush();
+                        running.decrementAndGet();
+                    }
+                });
+
+        client.count("count", 1);
+        flushing.await();
+        client.stop();
+
+        assertEquals(0, overlaps.get());
+        assertEquals("count:1|c", server.poll());
+    }
+
+    @Test
+    public void producerBlockedOnFullQueueShouldBeReleasedOnStop() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .queueSize(4)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .shutdownTimeout(Duration.ofMillis(100))
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 5; i++)
+                    client.count("count", i);
+            });
+
+            producer.start();
+            while (client.getTelemetry().getMetrics() < 4)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+
+            client.stop();
+            producer.join(TimeUnit.SECONDS.toMillis(5));
+
+            assertTrue("Producer is still blocked", !producer.isAlive());
+            assertEquals(1, client.getDroppedMetrics().getMetrics(MetricType.COUNTER));
+        } finally {
+            started.countDown();
+        }
+    }
+
+    /**
+     * @see OverflowPolicy#DROP_BY_PRIORITY
+     */
+    @Test
+    public void dropByPriorityShouldKeepSpaceForCounters() {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient dropping = new DatadogBuilder()
+                .address(address)
+                .queueSize(8)
+                .overflowPolicy(OverflowPolicy.DROP_BY_PRIORITY)
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            for (int i = 0; i < 8; i++)
+                dropping.histogram("histogram", i);
+
+            for (int i = 0; i < 8; i++)
+                dropping.count("count", i);
+
+            DroppedMetrics dropped = dropping.getDroppedMetrics();
+            assertEquals(4, dropped.getMetrics(MetricType.HISTOGRAM));
+            assertEquals(4, dropped.getMetrics(MetricType.COUNTER));
+        } finally {
+            started.countDown();
+            dropping.stop();
+        }
+    }
+
+    /**
+     * @see DatadogClient#getTelemetry()
+     * @see DatadogBuilder#sendTelemetry()
+     */
+    @Test
+    public void telemetryShouldBeSentWithoutPrefix() {
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .tag("env", "junit")
+                .queueSize(1024)
+                .sendTelemetry()
+                .flushInterval(Duration.ofMillis(100))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            client.count("count", 1);
+            client.gauge("gauge", 1);
+
+            ClientTelemetry telemetry = client.getTelemetry();
+            assertTrue(telemetry.getMetrics() >= 2);
+            assertEquals(1024, telemetry.getQueueCapacity());
+
+            long packets = 0;
+            boolean capacity = false;
+            while (packets < 2 || !capacity) {
+                String line = server.poll();
+                assertTrue("Telemetry isn't received", line != null);
+
+                if (line.startsWith("datadog.client.packets:"))
+                    packets += Long.parseLong(line.substring(line.indexOf(':') + 1, line.indexOf('|')));
+
+                if (line.equals("datadog.client.queue.capacity:1024|g|#env:junit"))
+                    capacity = true;
+            }
+        } finally {
+            client.stop();
+        }
+    }
+
+    /**
+     * @see DatadogBuilder#senders(int)
+     */
+    @Test
+    public void sendersShouldKeepOrderOfMetricsWithTheSameName() {
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .senders(4)
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            int names = 8;
+            int metrics = 50;
+            for (int i = 0; i < metrics; i++)
+                for (int n = 0; n < names; n++)
+                    client.count("count" + n, i);
+
+            Map<String, Integer> next = new HashMap<>();
+            for (int received = 0; received < names * metrics; received++) {
+                String line = server.poll();
+                assertTrue("Not all metrics received: " + received, line != null);
+
+                String name = line.substring(0, line.indexOf(':'));
+                int value = Integer.parseInt(line.substring(line.indexOf(':') + 1, line.indexOf('|')));
+
+                assertEquals(line, (int) next.getOrDefault(name, 0), value);
+                next.put(name, value + 1);
+            }
+        } finally {
+            client.stop();
+        }
+    }
+
+    /**
+     * @see DatadogBuilder#waitStrategy(java.util.function.Supplier)
+     * @see DatadogBuilder#producerType(ProducerType)
+     */
+    @Test
+    public void singleProducerWithYieldingStrategyShouldSendMetrics() {
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .waitStrategy(YieldingWaitStrategy::new)
+                .producerType(ProducerType.SINGLE)
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            client.count("count", 42);
+
+            assertEquals("test.count:42|c", server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void singleProducerShouldNotBeUsedWithAggregation() {
+        new DatadogBuilder()
+                .address(address)
+                .aggregateCounters()
+                .producerType(ProducerType.SINGLE)
+                .build(DisruptorDatadogClient::new);
+    }
+
+    /**
+     * @see DatadogBuilder#useGatheringWrites()
+     */
+    @Test
+    public void gatheringWritesShouldSendCompiledMetricsFromSegments() {
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .tag("env", "junit")
+                .useGatheringWrites()
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            Counter counter = client.counter("counter")
+                    .tag("foo", "bar")
+                    .compile();
+
+            Histogram histogram = client.histogram("histogram")
+                    .tag("dynamic", () -> dynamicTag)
+                    .compile();
+
+            counter.inc();
+            histogram.value(1337);
+            counter.count(42);
+
+            assertEquals("test.counter:1|c|#env:junit,foo:bar", server.poll());
+            assertEquals("test.histogram:1337|h|#env:junit,dynamic:nope", server.poll());
+            assertEquals("test.counter:42|c|#env:junit,foo:bar", server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    /**
+     * @see DatadogBuilder#useGatheringWrites()
+     */
+    @Test
+    public void gatheringWritesShouldBePackedWithOtherLines() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .useGatheringWrites()
+                .usePacking()
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            Counter counter = client.counter("counter").compile();
+
+            counter.inc();
+            client.gauge("gauge", 1337);
+            counter.count(42);
+            started.countDown();
+
+            assertEquals("test.counter:1|c\ntest.gauge:1337|g\ntest.counter:42|c", server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    /**
+     * @see DatadogBuilder#useDeferredFormatting()
+     */
+    @Test
+    public void deferredFormattingShouldSendValuesFormattedByConsumer() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .tag("env", "junit")
+                .bufferSize(16)
+                .useDeferredFormatting()
+                .usePacking()
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            Counter counter = client.counter("counter").compile();
+            Gauge gauge = client.gauge("gauge").compile();
+            Histogram histogram = client.histogram("histogram")
+                    .tag("dynamic", () -> dynamicTag)
+                    .compile();
+
+            counter.count(42);
+            gauge.value(2.5);
+            histogram.value(1337);
+            started.countDown();
+
+            assertEquals("test.counter:42|c|#env:junit\ntest.gauge:2.500000|g|#env:junit\ntest.histogram:1337|h|#env:junit,dynamic:nope",
+                    server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    /**
+     * @see ClientTelemetry#getDroppedPackets()
+     * @see PacketsDroppedException
+     */
+    @Test
+    public void packetsWhichWereNotSentShouldBeReportedOncePerFlush() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(1);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        DatadogClient client = new DatadogBuilder()
+                .transportFactory(b -> transport)
+                .errorHandler(errors::add)
+                .flushInterval(Duration.ofMillis(100))
+                .build(DisruptorDatadogClient::new);
+
+        try {
+            for (int i = 0; i < 3; i++)
+                client.count("count", i);
+
+            while (errors.isEmpty())
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+
+            assertEquals("count:0|c", transport.poll(0));
+            assertEquals(2, client.getTelemetry().getDroppedPackets());
+            assertEquals(1, client.getTelemetry().getPackets());
+            assertEquals(0, client.getTelemetry().getErrors());
+        } finally {
+            client.stop();
+        }
+
+        assertEquals(1, errors.size());
+        assertEquals(2, ((PacketsDroppedException) errors.get(0)).getDropped());
+    }
+
+    @Test
+    public void sendingShouldBeSuspendedWhileAgentIsUnreachable() throws Exception {
+        InetSocketAddress agent = new InetSocketAddress("localhost", 31338);
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        DatadogClient client = new DatadogBuilder()
+                .address(agent)
+                .errorHandler(errors::add)
+                .suspendOnAgentDown(2, Duration.ofMillis(50), Duration.ofMillis(100))
+                .build(DisruptorDatadogClient::new);
+
+        DatadogServer agentServer = null;
+        try {
+            while (!((AbstractDatadogClient) client).isSuspended()) {
+                client.count("count", 1);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+
+            long dropped = client.getDroppedMetrics().getMetrics(MetricType.COUNTER);
+            client.count("count", 1);
+            assertEquals(dropped + 1, client.getDroppedMetrics().getMetrics(MetricType.COUNTER));
+            assertTrue(errors.stream().anyMatch(e -> e instanceof AgentUnreachableException));
+
+            agentServer = new DatadogServer(agent);
+            agentServer.start();
+            // probes are empty datagrams
+            String received = "";
+            while (received == null || received.isEmpty()) {
+                client.count("count", 2);
+                received = agentServer.poll(50);
+            }
+
+            assertEquals("count:2|c", received);
+        } finally {
+            client.stop();
+            if (agentServer != null)
+                agentServer.stop();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package ashes.of.datadog.client;
+
+import ashes.of.datadog.client.metrics.MetricType;
+import ashes.of.datadog.client.metrics.ServiceCheck;
+import ashes.of.datadog.server.DatadogServer;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class ShardedDatadogClientTest {
+
+    private static final InetSocketAddress address = new InetSocketAddress("localhost", 31337);
+
+    private DatadogServer server;
+    private DatadogClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new DatadogServer(address);
+        server.start();
+
+        client = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .tag("env", "junit")
+                .shards(4)
+                .queueSize(1024)
+                .usePacking()
+                .build();
+    }
+
+    @After
+    public void shutDown() {
+        client.stop();
+        server.stop();
+    }
+
+
+    @Test
+    public void buildShouldCreateShardedClient() {
+        assertTrue(client instanceof ShardedDatadogClient);
+        assertEquals(1024, client.getTelemetry().getQueueCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void severalSendersShouldBeRejected() {
+        new DatadogBuilder()
+                .address(address)
+                .eventLane(16)
+                .senders(2)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void waitStrategyShouldBeRejected() {
+        new DatadogBuilder()
+                .address(address)
+                .shards(2)
+                .waitStrategy(YieldingWaitStrategy::new)
+                .build();
+    }
+
+    @Test
+    public void countShouldSendMetricWithTags() {
+        client.count("count", 42, "foo:bar");
+
+        assertEquals("test.count:42|c|#env:junit,foo:bar", server.poll());
+    }
+
+    @Test
+    public void metricsOfEachThreadShouldKeepOrder() throws Exception {
+        int threads = 4;
+        int metrics = 100;
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String name = "thread" + t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < metrics; i++)
+                    client.count(name, i);
+            });
+
+            producer.start();
+            producers.add(producer);
+        }
+
+        for (Thread producer : producers)
+            producer.join();
+
+        Map<String, Integer> next = new HashMap<>();
+        int received = 0;
+        while (received < threads * metrics) {
+            String packet = server.poll();
+            assertTrue("Not all metrics received: " + received, packet != null);
+
+            for (String line : Arrays.asList(packet.split("\n"))) {
+                String name = line.substring("test.".length(), line.indexOf(':'));
+                int value = Integer.parseInt(line.substring(line.indexOf(':') + 1, line.indexOf('|')));
+
+                assertEquals(line, (int) next.getOrDefault(name, 0), value);
+                next.put(name, value + 1);
+                received++;
+            }
+        }
+
+        assertEquals(threads * metrics, received);
+    }
+
+    @Test
+    public void serviceCheckShouldNotBeDroppedOrDelayedByFullMetricsQueue() {
+        CountDownLatch started = new CountDownLatch(1);
+        DatadogClient lanes = new DatadogBuilder()
+                .address(address)
+                .prefix("test")
+                .queueSize(64)
+                .eventLane(4)
+                .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .threadFactory(r -> new Thread(() -> {
+                    awaitUninterruptibly(started);
+                    r.run();
+                }))
+                .build();
+
+        try {
+            assertTrue(lanes instanceof ShardedDatadogClient);
+            for (int i = 0; i < 100; i++)
+                lanes.count("count", i);
+
+            lanes.serviceCheck("check", ServiceCheck.Status.OK).send();
+
+            assertEquals(36, lanes.getDroppedMetrics().getMetrics(MetricType.COUNTER));
+            assertEquals(0, lanes.getDroppedMetrics().getServiceChecks());
+            assertEquals(1, lanes.getTelemetry().getEventQueueDepth());
+            assertEquals(4, lanes.getTelemetry().getEventQueueCapacity());
+
+            started.countDown();
+
+            assertEquals("_sc|check|0", server.poll());
+            assertEquals("test.count:0|c", server.poll());
+        } finally {
+            lanes.stop();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ashes.of.datadog.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+
+public class TagSetTest {
+
+    @Test
+    public void writeShouldEncodeConstantTags() {
+        TagSet tags = new Tags()
+                .tag("env", "junit")
+                .tag("simple")
+                .compile();
+
+        assertTrue(tags.isConstant());
+        assertEquals("env:junit,simple", write(tags));
+    }
+
+    @Test
+    public void writeShouldPreserveOrderOfConstantAndDynamicTags() {
+        AtomicInteger value = new AtomicInteger();
+        TagSet tags = new Tags()
+                .tag("first", value::get)
+                .tag("env", "junit")
+                .tag("simple")
+                .tag("last", value::incrementAndGet)
+                .compile();
+
+        assertFalse(tags.isConstant());
+        assertEquals("first:0,env:junit,simple,last:1", write(tags));
+        assertEquals("first:1,env:junit,simple,last:2", write(tags));
+    }
+
+    @Test
+    public void writeShouldSkipNullDynamicTagValue() {
+        TagSet tags = new Tags()
+                .tag("dynamic", () -> null)
+                .compile();
+
+        assertEquals("dynamic", write(tags));
+    }
+
+    @Test
+    public void writeShouldUseCachedValueOfRefreshedTag() throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+        TagSet tags = new Tags()
+                .tag("env", "junit")
+                .tag("refreshed", invocations::incrementAndGet, Duration.ofMillis(50))
+                .compile();
+
+        assertEquals("env:junit,refreshed:1", write(tags));
+        assertEquals("env:junit,refreshed:1", write(tags));
+
+        Thread.sleep(200);
+
+        assertTrue(invocations.get() > 1);
+        assertNotEquals("env:junit,refreshed:1", write(tags));
+    }
+
+    @Test
+    public void errorsOfRefreshedTagShouldBePassedToHandlerWithoutStoppingRefresh() throws Exception {
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        AtomicInteger invocations = new AtomicInteger();
+        TagSet tags = new Tags(errors::add)
+                .tag("refreshed", () -> {
+                    if (invocations.incrementAndGet() > 1)
+                        throw new AssertionError("broken supplier");
+
+                    return "ok";
+                }, Duration.ofMillis(50))
+                .compile();
+
+        Thread.sleep(200);
+
+        assertTrue(invocations.get() > 2);
+        assertEquals(invocations.get() - 1, errors.size(), 1);
+        assertEquals("broken supplier", errors.get(0).getMessage());
+        assertEquals("refreshed:ok", write(tags));
+    }
+
+    @Test
+    public void refreshedTagShouldNotBeRefreshedWhenOwnerIsStopped() throws Exception {
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicInteger invocations = new AtomicInteger();
+        TagSet tags = new Tags(ex -> {}, stopped::get)
+                .tag("refreshed", invocations::incrementAndGet, Duration.ofMillis(20))
+                .compile();
+
+        Thread.sleep(100);
+        stopped.set(true);
+        Thread.sleep(40);
+        int last = invocations.get();
+        Thread.sleep(100);
+
+        assertEquals(last, invocations.get());
+        assertEquals("refreshed:" + last, write(tags));
+    }
+
+    @Test
+    public void cancelRefreshShouldStopRefreshAndKeepLastValue() throws Exception {
+        AtomicInteger invocations = new AtomicInteger();
+        TagSet tags = new Tags()
+                .tag("refreshed", invocations::incrementAndGet, Duration.ofMillis(20))
+                .compile();
+
+        Thread.sleep(100);
+        tags.cancelRefresh();
+        Thread.sleep(40);
+        int last = invocations.get();
+        Thread.sleep(100);
+
+        assertEquals(last, invocations.get());
+        assertEquals("refreshed:" + last, write(tags));
+    }
+
+    @Test
+    public void compileShouldReturnCachedTagSetUntilTagsAreChanged() {
+        Tags tags = new Tags().tag("env", "junit");
+        TagSet compiled = tags.compile();
+
+        assertSame(compiled, tags.compile());
+
+        tags.tag("other");
+
+        assertNotSame(compiled, tags.compile());
+        assertEquals("env:junit,other", write(tags.compile()));
+    }
+
+    @Test
+    public void emptyTagsShouldBeCompiledToEmptyTagSet() {
+        assertSame(TagSet.EMPTY, new Tags().compile());
+        assertTrue(TagSet.EMPTY.isEmpty());
+        assertEquals("", write(TagSet.EMPTY));
+    }
+
+
+    private String write(TagSet tags) {
+        ByteBuf b = Unpooled.buffer();
+        tags.write(b);
+        return b.toString(UTF_8);
+    }
+}
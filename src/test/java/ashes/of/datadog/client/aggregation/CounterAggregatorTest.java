@@ -0,0 +1,79 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.Tags;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class CounterAggregatorTest {
+
+    private final CounterAggregator aggregator = new CounterAggregator();
+
+    @Test
+    public void flushShouldSumCountersWithSameNameAndTags() {
+        aggregator.count("count", 5, new Tags().tag("foo", "bar"));
+        aggregator.count("count", 7, new Tags().tag("foo", () -> "bar"));
+        aggregator.count("count", 1, new Tags().tag("foo", "baz"));
+        aggregator.count("other", 1, new Tags().tag("foo", "bar"));
+
+        Map<MetricKey, Long> flushed = flush();
+
+        assertEquals(3, flushed.size());
+        assertEquals(12, (long) flushed.get(MetricKey.of("count", new Tags().tag("foo:bar"))));
+        assertEquals(1, (long) flushed.get(MetricKey.of("count", new Tags().tag("foo:baz"))));
+        assertEquals(1, (long) flushed.get(MetricKey.of("other", new Tags().tag("foo:bar"))));
+    }
+
+    @Test
+    public void flushShouldResetCountersAndSkipZeroSums() {
+        aggregator.count("count", 5, new Tags());
+        aggregator.count("zero", 5, new Tags());
+        aggregator.count("zero", -5, new Tags());
+
+        assertEquals(1, flush().size());
+        assertTrue(flush().isEmpty());
+    }
+
+    @Test
+    public void concurrentCountsShouldNotBeLostByFlush() throws Exception {
+        int threads = 4;
+        int counts = 200_000;
+        MetricKey key = MetricKey.of("count", new Tags());
+
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < counts; i++)
+                    aggregator.count(key, 1);
+            });
+
+            producer.start();
+            producers.add(producer);
+        }
+
+        long total = 0;
+        while (producers.stream().anyMatch(Thread::isAlive))
+            total += flush().getOrDefault(key, 0L);
+
+        for (Thread producer : producers)
+            producer.join();
+
+        total += flush().getOrDefault(key, 0L);
+
+        assertEquals((long) threads * counts, total);
+    }
+
+
+    private Map<MetricKey, Long> flush() {
+        Map<MetricKey, Long> flushed = new HashMap<>();
+        aggregator.flush(flushed::put);
+        return flushed;
+    }
+}
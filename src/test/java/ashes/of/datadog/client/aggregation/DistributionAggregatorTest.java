@@ -0,0 +1,91 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.MetricWriter;
+import ashes.of.datadog.client.Tags;
+import ashes.of.datadog.client.metrics.MetricType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class DistributionAggregatorTest {
+
+    @Test
+    public void flushShouldGroupBucketsWithSameCountInOneLine() {
+        DistributionAggregator aggregator = new DistributionAggregator(0.01, 2048, 1000);
+        aggregator.distribution("time", 1, new Tags());
+        aggregator.distribution("time", 100, new Tags());
+        aggregator.distribution("time", 5, new Tags());
+        aggregator.distribution("time", 5, new Tags());
+        aggregator.distribution("time", 5, new Tags());
+
+        List<String> lines = flush(aggregator);
+
+        assertEquals(2, lines.size());
+        assertEquals("time:0.99:100.5|1.0", lines.get(0));
+        assertEquals("time:5.003|0.3333333333333333", lines.get(1));
+        assertTrue(flush(aggregator).isEmpty());
+    }
+
+    @Test
+    public void infiniteValuesShouldBeDroppedWithoutBreakingFlush() {
+        DistributionAggregator aggregator = new DistributionAggregator(0.01, 2048, 1000);
+        assertTrue(aggregator.distribution("time", 1, new Tags()));
+        assertFalse(aggregator.distribution("time", Double.POSITIVE_INFINITY, new Tags()));
+        assertFalse(aggregator.distribution("time", Double.NEGATIVE_INFINITY, new Tags()));
+
+        assertEquals(1, flush(aggregator).size());
+        assertTrue(flush(aggregator).isEmpty());
+    }
+
+    @Test
+    public void sampleRateOfLargeBucketShouldKeepCountRebuiltByAgent() {
+        MetricWriter writer = new MetricWriter(null, new Tags().compile());
+        for (int count : new int[] { 700, 300_000, 2_000_000 }) {
+            DistributionAggregator aggregator = new DistributionAggregator(0.01, 2048, 1000);
+            for (int i = 0; i < count; i++)
+                aggregator.distribution("time", 5, new Tags());
+
+            List<String> lines = new ArrayList<>();
+            aggregator.flush((key, values, rate) -> {
+                ByteBuf b = Unpooled.buffer();
+                writer.write(b, key.getName(), values, MetricType.DISTRIBUTION, rate, key.tags());
+                lines.add(b.toString(StandardCharsets.UTF_8));
+            });
+
+            assertEquals(1, lines.size());
+            String line = lines.get(0);
+            String rate = line.substring(line.indexOf("|@") + 2);
+            assertFalse(line, rate.contains("E"));
+            assertEquals(line, count, Math.round(1 / Double.parseDouble(rate)));
+        }
+    }
+
+    @Test
+    public void flushShouldSplitLongLines() {
+        DistributionAggregator aggregator = new DistributionAggregator(0.01, 2048, 20);
+        for (int i = 1; i <= 10; i++)
+            aggregator.distribution("time", i * 1000, new Tags());
+
+        List<String> lines = flush(aggregator);
+
+        assertTrue(lines.toString(), lines.size() > 1);
+        for (String line : lines)
+            assertTrue(line, line.length() <= "time:".length() + 20 + "|1.0".length());
+    }
+
+
+    private List<String> flush(DistributionAggregator aggregator) {
+        List<String> lines = new ArrayList<>();
+        aggregator.flush((key, values, rate) -> lines.add(key.getName() + ':' + values + '|' + rate));
+        return lines;
+    }
+}
@@ -0,0 +1,82 @@
+package ashes.of.datadog.client.aggregation;
+
+import ashes.of.datadog.client.Tags;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class GaugeAggregatorTest {
+
+    @Test
+    public void flushShouldSendOnlyLastValue() {
+        GaugeAggregator aggregator = new GaugeAggregator(false);
+        aggregator.gauge("gauge", 5, new Tags().tag("foo", "bar"));
+        aggregator.gauge("gauge", 7, new Tags().tag("foo", "bar"));
+        aggregator.gauge("double", 0.5, new Tags());
+        aggregator.gauge("double", 1.5, new Tags());
+
+        Map<MetricKey, Number> flushed = flush(aggregator);
+
+        assertEquals(2, flushed.size());
+        assertEquals(7L, flushed.get(MetricKey.of("gauge", new Tags().tag("foo:bar"))));
+        assertEquals(1.5, flushed.get(MetricKey.of("double", new Tags())));
+    }
+
+    @Test
+    public void flushShouldSendUnchangedValuesByDefault() {
+        GaugeAggregator aggregator = new GaugeAggregator(false);
+        aggregator.gauge("gauge", 5, new Tags());
+
+        assertEquals(1, flush(aggregator).size());
+        assertEquals(1, flush(aggregator).size());
+    }
+
+    @Test
+    public void flushShouldSkipUnchangedValues() {
+        GaugeAggregator aggregator = new GaugeAggregator(true);
+        aggregator.gauge("gauge", 5, new Tags());
+
+        assertEquals(1, flush(aggregator).size());
+        assertTrue(flush(aggregator).isEmpty());
+
+        aggregator.gauge("gauge", 5, new Tags());
+        assertTrue(flush(aggregator).isEmpty());
+
+        aggregator.gauge("gauge", 6, new Tags());
+        assertEquals(6L, flush(aggregator).get(MetricKey.of("gauge", new Tags())));
+    }
+
+    @Test
+    public void flushShouldNotMixValueAndTypeOfConcurrentUpdates() throws Exception {
+        GaugeAggregator aggregator = new GaugeAggregator(false);
+        MetricKey key = MetricKey.of("gauge", new Tags());
+        aggregator.gauge(key, 1);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                aggregator.gauge(key, 1);
+                aggregator.gauge(key, 1.5);
+            }
+        });
+
+        writer.start();
+        while (writer.isAlive()) {
+            Number value = flush(aggregator).get(key);
+            assertTrue(String.valueOf(value), value.equals(1L) || value.equals(1.5));
+        }
+
+        writer.join();
+    }
+
+
+    private Map<MetricKey, Number> flush(GaugeAggregator aggregator) {
+        Map<MetricKey, Number> flushed = new HashMap<>();
+        aggregator.flush(flushed::put, flushed::put);
+        return flushed;
+    }
+}
@@ -0,0 +1,117 @@
+package ashes.of.datadog.client.aggregation;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class QuantileSketchTest {
+
+    @Test
+    public void quantileShouldBeWithinRelativeAccuracy() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        for (int i = 1; i <= 10_000; i++)
+            sketch.add(i);
+
+        assertEquals(10_000, sketch.getCount());
+        assertEquals(1, sketch.quantile(0), 0.01);
+        assertEquals(5_000, sketch.quantile(0.5), 50);
+        assertEquals(9_900, sketch.quantile(0.99), 99);
+        assertEquals(10_000, sketch.quantile(1), 100);
+    }
+
+    @Test
+    public void quantileShouldSupportNegativeAndZeroValues() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        sketch.add(-100);
+        sketch.add(0);
+        sketch.add(100);
+
+        assertEquals(-100, sketch.quantile(0), 1);
+        assertEquals(0, sketch.quantile(0.5), 0);
+        assertEquals(100, sketch.quantile(1), 1);
+    }
+
+    @Test
+    public void infiniteValuesShouldBeSkipped() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        assertTrue(sketch.add(1.0));
+        assertFalse(sketch.add(Double.POSITIVE_INFINITY));
+        assertFalse(sketch.add(Double.NEGATIVE_INFINITY));
+        assertFalse(sketch.add(Double.NaN));
+
+        assertEquals(1, sketch.getCount());
+        assertEquals(1, sketch.copyAndClear().getCount());
+        assertTrue(sketch.isEmpty());
+    }
+
+    @Test
+    public void extremeFiniteValuesShouldBeAddedAndFlushed() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        sketch.add(1.0);
+        sketch.add(Double.MAX_VALUE);
+        sketch.add(-Double.MAX_VALUE);
+        sketch.add(Double.MIN_VALUE);
+        sketch.add(Double.MIN_NORMAL);
+
+        QuantileSketch copy = sketch.copyAndClear();
+        assertTrue(sketch.isEmpty());
+        assertEquals(5, copy.getCount());
+
+        AtomicLong count = new AtomicLong();
+        copy.forEach((value, n) -> {
+            assertFalse(Double.isNaN(value) || Double.isInfinite(value));
+            count.addAndGet(n);
+        });
+
+        assertEquals(5, count.get());
+        assertEquals(-Double.MAX_VALUE, copy.quantile(0), Double.MAX_VALUE * 0.01);
+        assertEquals(Double.MAX_VALUE, copy.quantile(1), Double.MAX_VALUE * 0.01);
+    }
+
+    @Test
+    public void mergeShouldAddAllValues() {
+        QuantileSketch a = new QuantileSketch(0.01, 2048);
+        QuantileSketch b = new QuantileSketch(0.01, 2048);
+        for (int i = 1; i <= 100; i++) {
+            a.add(i);
+            b.add(i + 100);
+        }
+
+        a.merge(b);
+
+        assertEquals(200, a.getCount());
+        assertEquals(100, a.quantile(0.5), 1);
+        assertEquals(200, a.quantile(1), 2);
+    }
+
+    @Test
+    public void lowestBucketsShouldBeCollapsedWhenLimitIsExceeded() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 16);
+        sketch.add(1e-9);
+        sketch.add(1);
+        sketch.add(1e9);
+
+        AtomicLong buckets = new AtomicLong();
+        sketch.forEach((value, count) -> buckets.incrementAndGet());
+
+        assertEquals(3, sketch.getCount());
+        assertEquals(2, buckets.get());
+        assertEquals(1e9, sketch.quantile(1), 1e7);
+    }
+
+    @Test
+    public void copyAndClearShouldResetSketch() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 2048);
+        sketch.add(42);
+
+        QuantileSketch copy = sketch.copyAndClear();
+
+        assertTrue(sketch.isEmpty());
+        assertEquals(42, copy.quantile(0.5), 0.42);
+    }
+}
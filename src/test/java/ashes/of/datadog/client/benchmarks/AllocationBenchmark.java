@@ -0,0 +1,120 @@
+package ashes.of.datadog.client.benchmarks;
+
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.client.DisruptorDatadogClient;
+import ashes.of.datadog.client.metrics.Counter;
+import ashes.of.datadog.client.metrics.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Checks that publishing of metrics with pre-built tags doesn't allocate, neither on producer nor on consumer thread
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AllocationBenchmark {
+
+    /**
+     * Max allowed allocation per operation, leaves room for measurement noise
+     */
+    private static final double MAX_BYTES_PER_OP = 1.0;
+
+    @State(Scope.Thread)
+    public static class DatadogClientState {
+
+        /**
+         * Bound but never read channel, so client writes don't fail with port unreachable
+         */
+        protected DatagramChannel sink;
+        protected DatadogClient client;
+        protected Counter counter;
+        protected Histogram histogram;
+
+        @Setup
+        public void setUp() throws Exception {
+            sink = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+
+            client = new DatadogBuilder()
+                    .address((InetSocketAddress) sink.getLocalAddress())
+                    .prefix("ahahaha")
+                    .tag("benchmark")
+                    .tag("Lorem", "ipsum")
+                    .tag("dolor_sit", "amet")
+                    .tag("consectetur", "adipiscing")
+                    .errorHandler(System.out::println)
+                    .build(DisruptorDatadogClient::new);
+
+            counter = client.counter("hello.counter")
+                    .tag("foo", "bar");
+
+            histogram = client.histogram("hello.histogram")
+                    .tag("foo", "bar")
+                    .tag("the_foo", "the_bar");
+        }
+
+        @TearDown
+        public void down() throws Exception {
+            client.stop();
+            sink.close();
+        }
+    }
+
+    @Benchmark
+    public void counterInc(DatadogClientState state) {
+        state.counter.inc();
+    }
+
+    @Benchmark
+    public void histogramLongValue(DatadogClientState state) {
+        state.histogram.value(1337);
+    }
+
+    @Benchmark
+    public void histogramDoubleValue(DatadogClientState state) {
+        state.histogram.value(13.37);
+    }
+
+
+    public static void main(String... args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(AllocationBenchmark.class.getSimpleName())
+                .forks(1)
+                .threads(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(3)
+                .detectJvmArgs()
+                .mode(Mode.Throughput)
+                .addProfiler(GCProfiler.class)
+                .shouldDoGC(true)
+                .build();
+
+        Collection<RunResult> results = new Runner(opt).run();
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            Result<?> alloc = result.getSecondaryResults().get("·gc.alloc.rate.norm");
+            if (alloc == null)
+                throw new IllegalStateException("No allocation rate for " + benchmark + ", GC profiler isn't supported by JVM");
+
+            if (alloc.getScore() > MAX_BYTES_PER_OP)
+                throw new AssertionError(String.format("%s allocates %.2f B/op", benchmark, alloc.getScore()));
+
+            System.out.printf("%s allocates %.2f B/op%n", benchmark, alloc.getScore());
+        }
+    }
+}
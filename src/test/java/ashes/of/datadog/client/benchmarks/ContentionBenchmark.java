@@ -0,0 +1,91 @@
+package ashes.of.datadog.client.benchmarks;
+
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.client.OverflowPolicy;
+import ashes.of.datadog.client.metrics.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Publish latency of one client shared by 1 to 64 threads, with one ring buffer and with sharded ring buffers.
+ *
+ * Metrics which don't fit are dropped, so the benchmark measures contention of producers
+ * instead of throughput of the consumer thread
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    public int shards;
+
+    /**
+     * Bound but never read channel, so client writes don't fail with port unreachable
+     */
+    private DatagramChannel sink;
+    private DatadogClient client;
+    private Histogram histogram;
+
+    @Setup
+    public void setUp() throws Exception {
+        sink = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+
+        client = new DatadogBuilder()
+                .address((InetSocketAddress) sink.getLocalAddress())
+                .prefix("ahahaha")
+                .tag("benchmark")
+                .shards(shards)
+                .overflowPolicy(OverflowPolicy.DROP_NEWEST)
+                .build();
+
+        histogram = client.histogram("hello.histogram")
+                .tag("foo", "bar")
+                .compile();
+    }
+
+    @TearDown
+    public void down() throws Exception {
+        client.stop();
+        sink.close();
+    }
+
+    @Benchmark
+    public void histogramValue() {
+        histogram.value(1337);
+    }
+
+
+    public static void main(String... args) throws Exception {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opt = new OptionsBuilder()
+                    .include(ContentionBenchmark.class.getSimpleName())
+                    .forks(1)
+                    .threads(threads)
+                    .warmupTime(TimeValue.seconds(3))
+                    .warmupIterations(2)
+                    .measurementTime(TimeValue.seconds(3))
+                    .measurementIterations(3)
+                    .detectJvmArgs()
+                    .build();
+
+            for (RunResult result : new Runner(opt).run()) {
+                System.out.printf("threads: %2d, shards: %2s, publish: %.1f ns/op%n",
+                        threads,
+                        result.getParams().getParam("shards"),
+                        result.getPrimaryResult().getScore());
+            }
+        }
+    }
+}
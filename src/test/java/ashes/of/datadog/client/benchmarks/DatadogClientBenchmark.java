@@ -4,6 +4,7 @@ package ashes.of.datadog.client.benchmarks;
 import ashes.of.datadog.client.DatadogBuilder;
 import ashes.of.datadog.client.DatadogClient;
 import ashes.of.datadog.client.DisruptorDatadogClient;
+import ashes.of.datadog.client.metrics.Histogram;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.runner.Runner;
@@ -12,6 +13,7 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
 
 import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
 import java.util.concurrent.TimeUnit;
 
 
@@ -22,26 +24,53 @@ public class DatadogClientBenchmark {
     @State(Scope.Thread)
     public static class DatadogClientState {
 
+        /**
+         * Dynamic global tag is evaluated on each send even by compiled metric,
+         * so compiled and uncompiled metrics are compared with constant global tags too
+         */
+        @Param({"false", "true"})
+        protected boolean dynamicGlobalTag;
+
+        /**
+         * Bound but never read channel, so client writes don't fail with port unreachable
+         */
+        protected DatagramChannel sink;
         protected DatadogClient client;
-        protected InetSocketAddress address = new InetSocketAddress("localhost", 31337);
+        protected Histogram histogram;
+        protected Histogram compiled;
 
         @Setup
         public void setUp() throws Exception {
-            client = new DatadogBuilder()
-                    .address(address)
+            sink = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+
+            DatadogBuilder builder = new DatadogBuilder()
+                    .address((InetSocketAddress) sink.getLocalAddress())
                     .prefix("ahahaha")
                     .tag("benchmark")
                     .tag("Lorem", "ipsum")
                     .tag("dolor_sit", "amet")
                     .tag("consectetur", "adipiscing")
-                    .tag("current_time", System::currentTimeMillis)
-                    .errorHandler(System.out::println)
-                    .build(DisruptorDatadogClient::new);
+                    .errorHandler(System.out::println);
+
+            if (dynamicGlobalTag)
+                builder.tag("current_time", System::currentTimeMillis);
+
+            client = builder.build(DisruptorDatadogClient::new);
+
+            histogram = client.histogram("hello.client")
+                    .tag("foo", "bar")
+                    .tag("the_foo", "the_bar");
+
+            compiled = client.histogram("hello.client")
+                    .tag("foo", "bar")
+                    .tag("the_foo", "the_bar")
+                    .compile();
         }
 
         @TearDown
         public void down() throws Exception {
             client.stop();
+            sink.close();
         }
     }
 
@@ -53,6 +82,16 @@ public class DatadogClientBenchmark {
                 .value(1);
     }
 
+    @Benchmark
+    public void histogramWithTwoTagsPrebuilt(DatadogClientState state) throws Exception {
+        state.histogram.value(1);
+    }
+
+    @Benchmark
+    public void histogramWithTwoTagsCompiled(DatadogClientState state) throws Exception {
+        state.compiled.value(1);
+    }
+
 
     public static void main(String... args) throws Exception {
         Options opt = new OptionsBuilder()
@@ -0,0 +1,119 @@
+package ashes.of.datadog.client.benchmarks;
+
+
+import ashes.of.datadog.client.ClientTelemetry;
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.client.DisruptorDatadogClient;
+import ashes.of.datadog.client.metrics.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.net.StandardSocketOptions.SO_SNDBUF;
+
+
+/**
+ * Loss of packets versus stall of consumer thread with different send timeouts.
+ *
+ * Client writes to a local UDP stand-in of agent through a small socket buffer, loss and received packets
+ * are printed after each trial, consumer stalls show up as lower throughput of producer
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SendTimeoutBenchmark {
+
+    @Param({"0", "1", "10"})
+    public int sendTimeoutMillis;
+
+    private DatagramChannel agent;
+    private Thread receiver;
+    private final LongAdder received = new LongAdder();
+
+    private DatadogClient client;
+    private Histogram histogram;
+
+    @Setup
+    public void setUp() throws Exception {
+        agent = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+        receiver = new Thread(this::receive, "agent-stand-in");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        client = new DatadogBuilder()
+                .address((InetSocketAddress) agent.getLocalAddress())
+                .prefix("ahahaha")
+                .tag("benchmark")
+                .channelFactory(address -> {
+                    DatagramChannel channel = DatagramChannel.open();
+                    channel.configureBlocking(false);
+                    channel.setOption(SO_SNDBUF, 1 << 12);
+                    channel.connect(address);
+                    return channel;
+                })
+                .sendTimeout(Duration.ofMillis(sendTimeoutMillis))
+                .build(DisruptorDatadogClient::new);
+
+        histogram = client.histogram("hello.histogram")
+                .tag("foo", "bar")
+                .compile();
+    }
+
+    private void receive() {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1536);
+        while (agent.isOpen()) {
+            try {
+                buf.clear();
+                agent.receive(buf);
+                received.increment();
+            } catch (Exception e) {
+                return;
+            }
+        }
+    }
+
+    @TearDown
+    public void down() throws Exception {
+        client.stop();
+
+        ClientTelemetry telemetry = client.getTelemetry();
+        long sent = telemetry.getPackets();
+        long dropped = telemetry.getDroppedPackets();
+        System.out.printf("%nsend timeout %d ms: sent %,d, dropped %,d (%.2f%%), received %,d%n",
+                sendTimeoutMillis, sent, dropped, 100.0 * dropped / Math.max(sent + dropped, 1), received.sum());
+
+        agent.close();
+        receiver.join();
+    }
+
+    @Benchmark
+    public void histogramValue() {
+        histogram.value(1337);
+    }
+
+
+    public static void main(String... args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(SendTimeoutBenchmark.class.getSimpleName())
+                .forks(1)
+                .threads(4)
+                .warmupTime(TimeValue.seconds(3))
+                .warmupIterations(2)
+                .measurementTime(TimeValue.seconds(3))
+                .measurementIterations(3)
+                .detectJvmArgs()
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,124 @@
+package ashes.of.datadog.client.benchmarks;
+
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.client.DisruptorDatadogClient;
+import ashes.of.datadog.client.metrics.Histogram;
+import com.lmax.disruptor.*;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Throughput of one producer thread with each wait strategy and producer type,
+ * CPU time of consumer thread is printed after each trial
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WaitStrategyBenchmark {
+
+    @Param({"blocking", "sleeping", "yielding", "busySpin", "phasedLiteLock"})
+    public String strategy;
+
+    @Param({"SINGLE", "MULTI"})
+    public ProducerType producerType;
+
+    /**
+     * Bound but never read channel, so client writes don't fail with port unreachable
+     */
+    private DatagramChannel sink;
+    private DatadogClient client;
+    private Histogram histogram;
+
+    private final List<Thread> consumers = new CopyOnWriteArrayList<>();
+    private long startNanos;
+
+
+    private static Supplier<WaitStrategy> waitStrategy(String name) {
+        switch (name) {
+            case "blocking":        return BlockingWaitStrategy::new;
+            case "sleeping":        return SleepingWaitStrategy::new;
+            case "yielding":        return YieldingWaitStrategy::new;
+            case "busySpin":        return BusySpinWaitStrategy::new;
+            case "phasedLiteLock":  return () -> PhasedBackoffWaitStrategy.withLiteLock(1, 1, TimeUnit.MILLISECONDS);
+            default:
+                throw new IllegalArgumentException("Unknown wait strategy: " + name);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        sink = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+
+        client = new DatadogBuilder()
+                .address((InetSocketAddress) sink.getLocalAddress())
+                .prefix("ahahaha")
+                .tag("benchmark")
+                .waitStrategy(waitStrategy(strategy))
+                .producerType(producerType)
+                .threadFactory(r -> {
+                    Thread thread = new Thread(r, "datadog-client-" + strategy);
+                    thread.setDaemon(true);
+                    consumers.add(thread);
+                    return thread;
+                })
+                .build(DisruptorDatadogClient::new);
+
+        histogram = client.histogram("hello.histogram")
+                .tag("foo", "bar")
+                .compile();
+
+        startNanos = System.nanoTime();
+    }
+
+    @TearDown
+    public void down() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuNanos = 0;
+        for (Thread consumer : consumers)
+            cpuNanos += threads.getThreadCpuTime(consumer.getId());
+
+        long wallNanos = System.nanoTime() - startNanos;
+        System.out.printf("%n%s/%s consumer cpu: %.1f%% of wall time%n",
+                strategy, producerType, 100.0 * cpuNanos / wallNanos);
+
+        client.stop();
+        sink.close();
+    }
+
+    @Benchmark
+    public void histogramValue() {
+        histogram.value(1337);
+    }
+
+
+    public static void main(String... args) throws Exception {
+        Options opt = new OptionsBuilder()
+                .include(WaitStrategyBenchmark.class.getSimpleName())
+                .forks(1)
+                .threads(1)
+                .warmupTime(TimeValue.seconds(3))
+                .warmupIterations(2)
+                .measurementTime(TimeValue.seconds(3))
+                .measurementIterations(3)
+                .detectJvmArgs()
+                .build();
+
+        new Runner(opt).run();
+    }
+}
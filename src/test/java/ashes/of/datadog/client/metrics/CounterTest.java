@@ -2,7 +2,10 @@ package ashes.of.datadog.client.metrics;
 
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CounterTest extends MetricsTest {
 
@@ -46,4 +49,73 @@ public class CounterTest extends MetricsTest {
         assertEquals("test.counter:-3|c|#env:junit,test:countShould", server.poll());
         assertEquals("test.counter:4|c|#env:junit,test:countShould", server.poll());
     }
+
+    @Test
+    public void compiledCounterShouldSendMetricWithSameTags() {
+        Counter counter = withPrefixAndTags.counter("counter")
+                .tag("test", "compiled")
+                .compile();
+
+        counter.inc();
+        counter.count(42);
+
+        assertEquals("test.counter:1|c|#env:junit,test:compiled", server.poll());
+        assertEquals("test.counter:42|c|#env:junit,test:compiled", server.poll());
+    }
+
+    @Test
+    public void compiledCounterShouldEvaluateDynamicTagsOnEachSend() {
+        AtomicInteger value = new AtomicInteger();
+        Counter counter = noPrefixAndTags.counter("counter")
+                .tag("dynamic", value::incrementAndGet)
+                .compile();
+
+        counter.inc();
+        counter.inc();
+
+        assertEquals("counter:1|c|#dynamic:1", server.poll());
+        assertEquals("counter:1|c|#dynamic:2", server.poll());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void compiledCounterShouldNotAcceptNewTags() {
+        withPrefixAndTags.counter("counter")
+                .compile()
+                .tag("test", "compiled");
+    }
+
+    @Test
+    public void sampledCounterShouldSendPartOfValuesWithSampleRate() {
+        Counter counter = withPrefixAndTags.counter("sampled")
+                .sampleRate(0.5);
+
+        for (int i = 0; i < 400; i++)
+            counter.inc();
+
+        int received = 0;
+        for (String line = server.poll(); line != null; line = server.poll(200)) {
+            assertEquals("test.sampled:1|c|@0.5|#env:junit", line);
+            received++;
+        }
+
+        assertTrue("Received " + received + " of 400 with sample rate 0.5", received > 120 && received < 280);
+    }
+
+    @Test
+    public void compiledSampledCounterShouldSendSampleRate() {
+        Counter counter = noPrefixAndTags.counter("sampled")
+                .sampleRate(0.25)
+                .compile();
+
+        for (int i = 0; i < 100; i++)
+            counter.inc();
+
+        assertEquals("sampled:1|c|@0.25", server.poll());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampleRateShouldBePositive() {
+        noPrefixAndTags.counter("sampled")
+                .sampleRate(0);
+    }
 }
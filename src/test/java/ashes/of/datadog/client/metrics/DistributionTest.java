@@ -0,0 +1,29 @@
+package ashes.of.datadog.client.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DistributionTest extends MetricsTest {
+
+    @Test
+    public void valueShouldSendLongMetricWithSameTags() {
+        Distribution distribution = withPrefixAndTags.distribution("distribution")
+                .tag("multiply", "yes");
+
+        distribution.value(1337);
+        distribution.value(1338);
+
+        assertEquals("test.distribution:1337|d|#env:junit,multiply:yes", server.poll());
+        assertEquals("test.distribution:1338|d|#env:junit,multiply:yes", server.poll());
+    }
+
+    @Test
+    public void valueShouldSendDoubleMetricWithSameTags() {
+        Distribution distribution = noPrefixAndTags.distribution("distribution");
+
+        distribution.value(1337.5);
+
+        assertEquals("distribution:1337.500000|d", server.poll());
+    }
+}
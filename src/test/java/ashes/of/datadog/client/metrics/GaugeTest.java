@@ -29,4 +29,16 @@ public class GaugeTest extends MetricsTest {
         assertEquals("test.gauge:5.400000|g|#env:junit", server.poll());
         assertEquals("test.gauge:5.700000|g|#env:junit", server.poll());
     }
+
+    @Test
+    public void compiledGaugeShouldSendLongAndDoubleValues() {
+        Gauge gauge = withPrefixAndTags.gauge("gauge")
+                .compile();
+
+        gauge.value(5);
+        gauge.value(5.4);
+
+        assertEquals("test.gauge:5|g|#env:junit", server.poll());
+        assertEquals("test.gauge:5.400000|g|#env:junit", server.poll());
+    }
 }
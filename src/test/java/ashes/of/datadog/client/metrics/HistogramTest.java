@@ -31,4 +31,15 @@ public class HistogramTest extends MetricsTest {
         assertEquals("test.histogram:1337.500000|h|#env:junit,multiply:yes", server.poll());
         assertEquals("test.histogram:1336.700000|h|#env:junit,multiply:yes", server.poll());
     }
+
+    @Test
+    public void sampledValueShouldSendMetricWithSampleRate() {
+        Histogram histo = withPrefixAndTags.histogram("histogram")
+                .sampleRate(0.1);
+
+        for (int i = 0; i < 100; i++)
+            histo.value(42);
+
+        assertEquals("test.histogram:42|h|@0.1|#env:junit", server.poll());
+    }
 }
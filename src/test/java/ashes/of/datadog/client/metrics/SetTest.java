@@ -31,4 +31,17 @@ public class SetTest extends MetricsTest {
         assertEquals("test.set:123|s|#env:junit,status:denied,access:user", server.poll());
         assertEquals("test.set:124|s|#env:junit,status:restricted,access:user", server.poll());
     }
+
+    @Test
+    public void compiledSetShouldSendMetricWithTags() {
+        Set set = noPrefixAndTags.set("set")
+                .tag("access", "user")
+                .compile();
+
+        set.add(123);
+        set.add("value");
+
+        assertEquals("set:123|s|#access:user", server.poll());
+        assertEquals("set:value|s|#access:user", server.poll());
+    }
 }
@@ -401,4 +401,17 @@ public class TimerTest extends MetricsTest {
         System.out.println(event);
         assertThat(event, Matchers.matchesPattern("test\\.time:\\d+\\.\\d+\\|h\\|#env:junit,method:elapsed"));
     }
+
+    @Test
+    public void compiledTimerShouldSendTimeInSeconds() {
+        Timer timer = withPrefixAndTags.timer("time")
+                .tag("method", "compiled")
+                .compile();
+
+        timer.millis(123_456);
+        timer.elapsed(Duration.ofMillis(456));
+
+        assertEquals("test.time:123.456000|h|#env:junit,method:compiled", server.poll());
+        assertEquals("test.time:0.456000|h|#env:junit,method:compiled", server.poll());
+    }
 }
@@ -0,0 +1,131 @@
+package ashes.of.datadog.client.ring;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ByteRingTest {
+
+    private static ByteBuf record(String s) {
+        return Unpooled.copiedBuffer(s, UTF_8);
+    }
+
+    private static List<String> read(ByteRing ring) throws Exception {
+        List<String> records = new ArrayList<>();
+        ring.read((buf, index, length) -> records.add(buf.toString(index, length, UTF_8)));
+
+        return records;
+    }
+
+
+    @Test
+    public void readShouldReturnRecordsInOrder() throws Exception {
+        ByteRing ring = new ByteRing(1024, false);
+        ring.put(record("first:1|c"));
+        ring.put(record(""));
+        ring.put(record("second:2|c"));
+
+        List<String> records = read(ring);
+
+        assertEquals(3, records.size());
+        assertEquals("first:1|c", records.get(0));
+        assertEquals("", records.get(1));
+        assertEquals("second:2|c", records.get(2));
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void ringShouldUseSpaceInProportionToRecordLength() {
+        ByteRing ring = new ByteRing(1024, false);
+        ring.put(record("abc"));
+        ring.put(record("0123456789"));
+
+        // 4 bytes header + payload, aligned to 8
+        assertEquals(8 + 16, ring.size());
+    }
+
+    @Test
+    public void recordsShouldWrapAroundTheEndOfRing() throws Exception {
+        ByteRing ring = new ByteRing(1024, true);
+        for (int i = 0; i < 1000; i++) {
+            String expected = "metric.name:" + i + "|c|#tag:" + i;
+            assertTrue(ring.offer(record(expected)));
+
+            List<String> records = read(ring);
+            assertEquals(1, records.size());
+            assertEquals(expected, records.get(0));
+        }
+
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void offerShouldReturnFalseIfRingIsFull() throws Exception {
+        ByteRing ring = new ByteRing(1024, false);
+        ByteBuf record = Unpooled.buffer().writeZero(60);
+
+        int offered = 0;
+        while (ring.offer(record.duplicate()))
+            offered++;
+
+        assertEquals(1024 / 64, offered);
+        assertFalse(ring.offer(record("x")));
+
+        assertEquals(offered, read(ring).size());
+        assertTrue(ring.offer(record("x")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void offerShouldThrowIfRecordIsTooLarge() {
+        ByteRing ring = new ByteRing(1024, false);
+        ring.offer(Unpooled.buffer().writeZero(ring.getMaxRecordLength() + 1));
+    }
+
+    @Test
+    public void readShouldReceiveAllRecordsFromConcurrentProducers() throws Exception {
+        ByteRing ring = new ByteRing(4096, false);
+        int producers = 4;
+        int records = 20_000;
+
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            String prefix = "producer" + p + ":";
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < records; i++)
+                    ring.put(record(prefix + i));
+
+                done.countDown();
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int[] last = new int[producers];
+        int received = 0;
+        while (received < producers * records) {
+            for (String record : read(ring)) {
+                int producer = record.charAt("producer".length()) - '0';
+                int value = Integer.parseInt(record.substring(record.indexOf(':') + 1));
+
+                // records of one producer keep their order
+                assertEquals(last[producer], value);
+                last[producer]++;
+                received++;
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(ring.isEmpty());
+    }
+}
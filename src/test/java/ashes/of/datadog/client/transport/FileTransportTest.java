@@ -0,0 +1,71 @@
+package ashes.of.datadog.client.transport;
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.client.PacketsDroppedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class FileTransportTest {
+
+    private Path path;
+
+    @Before
+    public void setUp() throws Exception {
+        path = Files.createTempFile("datadog", ".log");
+    }
+
+    @After
+    public void shutDown() throws Exception {
+        Files.deleteIfExists(path);
+    }
+
+
+    @Test
+    public void metricsShouldBeAppendedToFileOnStop() throws Exception {
+        DatadogClient client = new DatadogBuilder()
+                .prefix("test")
+                .transportFactory(b -> FileTransport.open(path))
+                .build();
+
+        client.count("count", 42);
+        client.gauge("gauge", 1337);
+        client.stop();
+
+        assertEquals(Arrays.asList("test.count:42|c", "test.gauge:1337|g"), Files.readAllLines(path));
+    }
+
+    @Test
+    public void packetsLostByFailedFlushShouldBeCountedAsDropped() throws Exception {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        channel.close();
+
+        List<Throwable> errors = new CopyOnWriteArrayList<>();
+        DatadogClient client = new DatadogBuilder()
+                .transportFactory(b -> new FileTransport(channel, 1 << 16))
+                .errorHandler(errors::add)
+                .build();
+
+        client.count("count", 42);
+        client.gauge("gauge", 1337);
+        client.stop();
+
+        assertEquals(2, client.getTelemetry().getDroppedPackets());
+        assertEquals(2, errors.stream()
+                .filter(e -> e instanceof PacketsDroppedException)
+                .mapToLong(e -> ((PacketsDroppedException) e).getDropped())
+                .sum());
+    }
+}
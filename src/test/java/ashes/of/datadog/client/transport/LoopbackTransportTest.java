@@ -0,0 +1,58 @@
+package ashes.of.datadog.client.transport;
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.client.metrics.ServiceCheck;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class LoopbackTransportTest {
+
+    @Test
+    public void clientShouldSendMetricsThroughTransport() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        DatadogClient client = new DatadogBuilder()
+                .prefix("test")
+                .tag("env", "junit")
+                .transportFactory(b -> transport)
+                .build();
+
+        try {
+            client.count("count", 42);
+            client.serviceCheck("check", ServiceCheck.Status.OK).send();
+
+            assertEquals("test.count:42|c|#env:junit", transport.poll(1000));
+            assertEquals("_sc|check|0|#env:junit", transport.poll(1000));
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void partsShouldBeSentAsOnePacket() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport();
+        ByteBuffer head = ByteBuffer.wrap("test.count:".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer tail = ByteBuffer.wrap("42|c".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(15, transport.send(head, tail));
+        assertEquals(0, head.remaining());
+        assertEquals(0, tail.remaining());
+        assertEquals("test.count:42|c", transport.poll(0));
+    }
+
+    @Test
+    public void packetShouldNotBeSentIfQueueIsFull() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(1);
+        ByteBuffer first = ByteBuffer.wrap("first:1|c".getBytes(StandardCharsets.UTF_8));
+        ByteBuffer second = ByteBuffer.wrap("second:2|c".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(9, transport.send(first));
+        assertEquals(0, transport.send(second));
+        assertEquals(1, transport.size());
+    }
+}
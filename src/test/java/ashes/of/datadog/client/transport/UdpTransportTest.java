@@ -0,0 +1,64 @@
+package ashes.of.datadog.client.transport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class UdpTransportTest {
+
+    private DatagramChannel server;
+    private DatagramChannel channel;
+
+    @Before
+    public void setUp() throws Exception {
+        server = DatagramChannel.open().bind(new InetSocketAddress("localhost", 0));
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.connect(server.getLocalAddress());
+    }
+
+    @After
+    public void shutDown() throws Exception {
+        server.close();
+        channel.close();
+    }
+
+
+    @Test
+    public void partsShouldBeSentAsOneDatagram() throws Exception {
+        UdpTransport transport = new UdpTransport(channel, 10, TimeUnit.MILLISECONDS);
+
+        long sent = transport.send(
+                ByteBuffer.wrap("test.count:".getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap("42".getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap("|c".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(15, sent);
+        assertEquals("test.count:42|c", receive());
+    }
+
+    @Test
+    public void closeShouldCloseChannel() throws Exception {
+        UdpTransport transport = new UdpTransport(channel, 10, TimeUnit.MILLISECONDS);
+        transport.close();
+
+        assertEquals(false, channel.isOpen());
+    }
+
+    private String receive() throws Exception {
+        ByteBuffer buf = ByteBuffer.allocate(1536);
+        server.receive(buf);
+        buf.flip();
+
+        return StandardCharsets.UTF_8.decode(buf).toString();
+    }
+}
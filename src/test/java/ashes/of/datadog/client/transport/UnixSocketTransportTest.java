@@ -0,0 +1,140 @@
+package ashes.of.datadog.client.transport;
+
+import ashes.of.datadog.client.DatadogBuilder;
+import ashes.of.datadog.client.DatadogClient;
+import ashes.of.datadog.server.UnixSocketServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+
+public class UnixSocketTransportTest {
+
+    private Path dir;
+    private Path path;
+    private UnixSocketServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("Unix domain sockets aren't supported", UnixSocketTransport.isSupported());
+
+        dir = Files.createTempDirectory("datadog");
+        path = dir.resolve("dsd.socket");
+        server = new UnixSocketServer(path);
+        server.start();
+    }
+
+    @After
+    public void shutDown() throws Exception {
+        if (server != null)
+            server.stop();
+
+        if (dir != null)
+            Files.deleteIfExists(dir);
+    }
+
+
+    @Test
+    public void metricsShouldBeSentAsFrames() {
+        DatadogClient client = new DatadogBuilder()
+                .unixSocket(path.toString())
+                .prefix("test")
+                .tag("env", "junit")
+                .build();
+
+        try {
+            client.count("count", 42);
+            client.gauge("gauge", 1337);
+
+            assertEquals("test.count:42|c|#env:junit", server.poll());
+            assertEquals("test.gauge:1337|g|#env:junit", server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void packedMetricsShouldBeSentAsOneFrame() {
+        DatadogClient client = new DatadogBuilder()
+                .unixSocket(path.toString())
+                .usePacking()
+                .maxPacketSize(8192)
+                .threadFactory(r -> new Thread(() -> {
+                    // consumer starts after metrics are published, so they're sent in one batch
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    r.run();
+                }))
+                .build();
+
+        try {
+            client.count("first", 1);
+            client.count("second", 2);
+
+            assertEquals("first:1|c\nsecond:2|c", server.poll());
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void clientShouldConnectWhenAgentStartsAfterBuild() {
+        Path late = dir.resolve("late.socket");
+        DatadogClient client = new DatadogBuilder()
+                .unixSocket(late.toString())
+                .build();
+
+        UnixSocketServer agent = new UnixSocketServer(late);
+        agent.start();
+        try {
+            assertNotNull(countUntilReceived(client, agent));
+        } finally {
+            client.stop();
+            agent.stop();
+        }
+    }
+
+    @Test
+    public void clientShouldReconnectAfterAgentRestart() {
+        DatadogClient client = new DatadogBuilder()
+                .unixSocket(path.toString())
+                .build();
+
+        try {
+            client.count("before", 1);
+            assertEquals("before:1|c", server.poll());
+
+            server.stop();
+            server = new UnixSocketServer(path);
+            server.start();
+
+            assertNotNull(countUntilReceived(client, server));
+        } finally {
+            client.stop();
+        }
+    }
+
+    /**
+     * Metrics are dropped until the socket is reconnected, so they are sent until the first one is received
+     */
+    private String countUntilReceived(DatadogClient client, UnixSocketServer agent) {
+        for (int i = 0; i < 100; i++) {
+            client.count("after", 1);
+            String line = agent.poll(50);
+            if (line != null)
+                return line;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,50 @@
+package ashes.of.datadog.client.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class XorShiftRandomTest {
+
+    @Test
+    public void nextDoubleShouldBeUniformInUnitRange() {
+        XorShiftRandom random = new XorShiftRandom(42);
+
+        double sum = 0;
+        for (int i = 0; i < 100_000; i++) {
+            double value = random.nextDouble();
+            assertTrue(value >= 0 && value < 1);
+            sum += value;
+        }
+
+        assertEquals(0.5, sum / 100_000, 0.01);
+    }
+
+    @Test
+    public void zeroSeedShouldNotStickAtZero() {
+        XorShiftRandom random = new XorShiftRandom(0);
+
+        assertTrue(random.nextLong() != 0);
+    }
+
+    @Test
+    public void sampleShouldPassAllValuesWithFullRate() {
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(XorShiftRandom.sample(1));
+            assertFalse(XorShiftRandom.sample(0));
+        }
+    }
+
+    @Test
+    public void sampleShouldPassValuesWithProbabilityOfRate() {
+        int passed = 0;
+        for (int i = 0; i < 100_000; i++)
+            if (XorShiftRandom.sample(0.1))
+                passed++;
+
+        assertEquals(10_000, passed, 500);
+    }
+}
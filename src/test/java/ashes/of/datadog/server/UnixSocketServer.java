@@ -0,0 +1,122 @@
+package ashes.of.datadog.server;
+
+import ashes.of.datadog.client.transport.UnixSocketTransport;
+import ashes.of.datadog.client.utils.DefaultThreadFactory;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Stand-in of agent stream unix socket, receives frames prefixed with length
+ */
+public class UnixSocketServer {
+
+    private static final ThreadFactory threadFactory = new DefaultThreadFactory("datadog-unix-server-%d", true);
+
+    private final Path path;
+    private final ServerSocketChannel server;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(65536);
+    private final Thread thread;
+
+    /**
+     * Accepted client, closed on stop like by restarted agent
+     */
+    @Nullable
+    private volatile SocketChannel client;
+
+
+    public UnixSocketServer(Path path) {
+        this.path = path;
+        try {
+            Method open = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+            this.server = (ServerSocketChannel) open.invoke(null, UnixSocketTransport.unix());
+            this.server.bind(UnixSocketTransport.address(path.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(e);
+        }
+
+        this.thread = threadFactory.newThread(this::receiveFrames);
+    }
+
+
+    private void receiveFrames() {
+        while (server.isOpen()) {
+            try (SocketChannel client = server.accept()) {
+                this.client = client;
+                while (true)
+                    queue.add(receiveFrame(client));
+            } catch (IOException e) {
+                // client or server is closed
+            }
+        }
+    }
+
+    private String receiveFrame(SocketChannel client) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(client, header);
+
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        readFully(client, payload);
+
+        return new String(payload.array(), StandardCharsets.UTF_8);
+    }
+
+    private void readFully(SocketChannel client, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (client.read(buf) < 0)
+                throw new EOFException();
+        }
+    }
+
+
+    @Nullable
+    public String poll() {
+        return poll(1000);
+    }
+
+    @Nullable
+    public String poll(long ms) {
+        try {
+            return queue.poll(ms, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    public void stop() {
+        try {
+            server.close();
+            SocketChannel client = this.client;
+            if (client != null)
+                client.close();
+
+            thread.join();
+            Files.deleteIfExists(path);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+}